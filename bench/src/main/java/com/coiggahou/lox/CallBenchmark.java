@@ -0,0 +1,43 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.output.AppendableOutputSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a recursive fib(30), about 2.7M calls and returns
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallBenchmark {
+
+    private List<Stmt> statements;
+
+    @Setup
+    public void setup() {
+        statements = new Parser(new Scanner(Workloads.fib(30))).parse();
+        new Resolver().resolve(statements);
+    }
+
+    @Benchmark
+    public Object fib30() {
+        StringBuilder out = new StringBuilder();
+        new Interpreter(new AppendableOutputSink(out)).interpret(statements);
+        return out;
+    }
+}
@@ -0,0 +1,71 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.output.AppendableOutputSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a nested counting loop of 1M iterations in all:
+ *
+ *    forLoop:   written with `for`
+ *    whileLoop: the same loop desugared by hand into blocks and `while`
+ *
+ * with `deadCodeElimination`, the blocks declaring nothing don't get a scope
+ * (as when run by the LoxEngine), without it every block does
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ForLoopBenchmark {
+
+    @Param({"false", "true"})
+    public boolean deadCodeElimination;
+
+    private List<Stmt> forLoop;
+
+    private List<Stmt> whileLoop;
+
+    @Setup
+    public void setup() {
+        forLoop = prepare(Workloads.forLoop(100_000));
+        whileLoop = prepare(Workloads.desugaredForLoop(100_000));
+    }
+
+    private List<Stmt> prepare(String source) {
+        List<Stmt> statements = new Parser(new Scanner(source)).parse();
+        if (deadCodeElimination) {
+            statements = new DeadCodeEliminator().eliminate(statements);
+        }
+        new Resolver().resolve(statements);
+        return statements;
+    }
+
+    @Benchmark
+    public Object forLoop() {
+        StringBuilder out = new StringBuilder();
+        new Interpreter(new AppendableOutputSink(out)).interpret(forLoop);
+        return out;
+    }
+
+    @Benchmark
+    public Object whileLoop() {
+        StringBuilder out = new StringBuilder();
+        new Interpreter(new AppendableOutputSink(out)).interpret(whileLoop);
+        return out;
+    }
+}
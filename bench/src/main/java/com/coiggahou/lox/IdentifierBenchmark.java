@@ -0,0 +1,101 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.util.StringInterner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.coiggahou.lox.util.CharUtil.isAlnumOrUnderline;
+import static com.coiggahou.lox.util.CharUtil.isAlphaOrUnderline;
+
+/**
+ * keyword recognition for every identifier-like word of a source:
+ *
+ *    hashMapLookup: the previous approach,
+ *                   substring then a HashMap<String, TokenType> lookup
+ *    keywordSwitch: Scanner.keywordType() checking characters in place,
+ *                   plus the intern table for the non-keyword names
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdentifierBenchmark {
+
+    private static final Map<String, TokenType> keywords = new HashMap<>();
+
+    static {
+        String[] words = {"and", "class", "else", "false", "for", "fun", "if", "nil",
+                          "or", "print", "return", "super", "this", "true", "var", "while"};
+        for (String word : words) {
+            keywords.put(word, Scanner.keywordType(word, 0, word.length()));
+        }
+    }
+
+    private String source;
+
+    /**
+     * [start, end) of every word in the source
+     */
+    private int[] starts;
+    private int[] ends;
+
+    @Setup
+    public void setup() {
+        source = Workloads.mixedSource(200_000);
+        List<int[]> words = new ArrayList<>();
+        int i = 0;
+        while (i < source.length()) {
+            if (isAlphaOrUnderline(source.charAt(i))) {
+                int start = i;
+                while (i < source.length() && isAlnumOrUnderline(source.charAt(i))) i++;
+                words.add(new int[] {start, i});
+            }
+            else {
+                i++;
+            }
+        }
+        starts = words.stream().mapToInt(w -> w[0]).toArray();
+        ends = words.stream().mapToInt(w -> w[1]).toArray();
+    }
+
+    @Benchmark
+    public void hashMapLookup(Blackhole blackhole) {
+        for (int i = 0; i < starts.length; i++) {
+            String text = source.substring(starts[i], ends[i]);
+            TokenType type = keywords.get(text);
+            blackhole.consume(type == null ? text : type);
+        }
+    }
+
+    @Benchmark
+    public void keywordSwitch(Blackhole blackhole) {
+        StringInterner identifiers = new StringInterner();
+        for (int i = 0; i < starts.length; i++) {
+            TokenType type = Scanner.keywordType(source, starts[i], ends[i]);
+            if (type == null) {
+                int hash = StringInterner.hash(source, starts[i], ends[i]);
+                blackhole.consume(identifiers.intern(source, starts[i], ends[i], hash));
+            }
+            else {
+                blackhole.consume(type);
+            }
+        }
+    }
+}
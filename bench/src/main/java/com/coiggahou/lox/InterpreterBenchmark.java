@@ -0,0 +1,69 @@
+package com.coiggahou.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * time of Interpreter.interpret() for one run of each workload,
+ * the program is scanned, parsed and resolved beforehand
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+
+    @Param({"numericLoop", "deepNesting", "stringConcat", "manyGlobals"})
+    public String workload;
+
+    private List<Stmt> statements;
+
+    private PrintStream originalOut;
+
+    static String source(String workload) {
+        switch (workload) {
+            case "numericLoop":  return Workloads.numericLoop(1_000_000);
+            case "deepNesting":  return Workloads.deepNesting(32, 200_000);
+            case "stringConcat": return Workloads.stringConcat(5_000);
+            case "manyGlobals":  return Workloads.manyGlobals(1_000, 100_000);
+            default: throw new IllegalArgumentException("unknown workload " + workload);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        statements = new Parser(new Scanner(source(workload)).scanTokens()).parse();
+        new Resolver().resolve(statements);
+
+        // the workloads print their results, keep them out of the JMH log
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void interpret() {
+        new Interpreter().interpret(statements);
+    }
+}
@@ -0,0 +1,71 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.output.AppendableOutputSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * what checking the ExecutionLimits costs a run which stays well within them
+ *
+ *    none:     ExecutionLimits.NONE, only the step countdown (which is always there)
+ *    generous: every limit set, far above what the workload needs
+ *
+ * the workloads are all loops and calls, which is where steps are charged
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LimitsBenchmark {
+
+    @Param({"numericLoop", "forLoop", "fib"})
+    public String workload;
+
+    @Param({"none", "generous"})
+    public String limits;
+
+    private LoxEngine engine;
+
+    private Program program;
+
+    @Setup
+    public void setup() {
+        String source = switch (workload) {
+            case "numericLoop" -> Workloads.numericLoop(1_000_000);
+            case "forLoop" -> Workloads.forLoop(100_000);
+            case "fib" -> Workloads.fib(25);
+            default -> throw new IllegalArgumentException("unknown workload " + workload);
+        };
+        engine = new LoxEngine();
+        if (limits.equals("generous")) {
+            engine = engine.withLimits(ExecutionLimits.NONE
+                    .withMaxSteps(1_000_000_000_000L)
+                    .withTimeout(Duration.ofHours(1))
+                    .withMaxEnvironments(1_000_000_000_000L)
+                    .withMaxScopes(100_000)
+                    .withMaxStringLength(1 << 30));
+        }
+        program = engine.compile(source);
+    }
+
+    @Benchmark
+    public Object execute() {
+        StringBuilder out = new StringBuilder();
+        engine.execute(program, new AppendableOutputSink(out));
+        return out;
+    }
+}
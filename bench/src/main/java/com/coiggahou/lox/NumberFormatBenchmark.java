@@ -0,0 +1,75 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.output.DoubleFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * formatting 1024 numbers into a buffer, like printing a numeric table:
+ *
+ *    toStringAndStrip: Double.toString(), endsWith(".0") and substring(),
+ *                      as Interpreter.stringify() used to do
+ *    formatter:        DoubleFormatter.append()
+ *
+ * `kind` is the numbers formatted: integers, or numbers with a fraction
+ * (which both go through Double.toString())
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NumberFormatBenchmark {
+
+    @Param({"integers", "fractions"})
+    public String kind;
+
+    private final double[] numbers = new double[1024];
+
+    private final StringBuilder buffer = new StringBuilder(64 * 1024);
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = kind.equals("integers")
+                    ? random.nextInt(1_000_000) - 1000
+                    : random.nextInt(1_000_000) / 100.0 + 0.001;
+        }
+    }
+
+    @Benchmark
+    public Object toStringAndStrip() {
+        buffer.setLength(0);
+        for (double number : numbers) {
+            String text = Double.toString(number);
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            buffer.append(text).append('\n');
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Object formatter() {
+        buffer.setLength(0);
+        for (double number : numbers) {
+            DoubleFormatter.append(buffer, number).append('\n');
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,78 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.output.BufferedOutputSink;
+import com.coiggahou.lox.output.OutputSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a script printing 100k lines, written to /dev/null by
+ *
+ *    printStream:  System.out.println() for every line, as `print` used to do
+ *    bufferedSink: the BufferedOutputSink the command line runs with now
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutputBenchmark {
+
+    private List<Stmt> statements;
+
+    private FileOutputStream devNull;
+
+    private PrintStream printStream;
+
+    private OutputSink bufferedSink;
+
+    private PrintStream originalOut;
+
+    @Setup
+    public void setup() throws IOException {
+        statements = new Parser(new Scanner(Workloads.printLines(100_000))).parse();
+        new Resolver().resolve(statements);
+
+        devNull = new FileOutputStream("/dev/null");
+        // what System.out is: an auto-flushing PrintStream over a FileOutputStream
+        printStream = new PrintStream(devNull, true);
+        bufferedSink = new BufferedOutputSink(devNull.getChannel(), Charset.defaultCharset());
+
+        originalOut = System.out;
+        System.setOut(printStream);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(originalOut);
+        devNull.close();
+    }
+
+    @Benchmark
+    public void printStream() {
+        new Interpreter().interpret(statements);
+    }
+
+    @Benchmark
+    public void bufferedSink() {
+        new Interpreter(bufferedSink).interpret(statements);
+        bufferedSink.flush();
+    }
+}
@@ -0,0 +1,66 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.ErrorCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * scanning and parsing a ~4MB script:
+ *
+ *    sequential: one Parser over one Scanner, as LoxEngine does by default
+ *    parallel:   ParallelParser on a pool of `threads` threads,
+ *                compare it across the values of `threads` to see how it scales
+ *                (it can't go beyond the number of cores of the machine)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelParseBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private String source;
+
+    private ForkJoinPool pool;
+
+    private ParallelParser parser;
+
+    @Setup
+    public void setup() {
+        source = Workloads.mixedSource(4_000_000);
+        pool = new ForkJoinPool(threads);
+        parser = new ParallelParser(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Object sequential() {
+        return new Parser(new Scanner(source)).parse();
+    }
+
+    @Benchmark
+    public Object parallel() {
+        return parser.parse(source, new ErrorCollector());
+    }
+}
@@ -0,0 +1,73 @@
+package com.coiggahou.lox;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * throughput of Parser.parse() over pre-scanned tokens
+ * and over a Scanner producing tokens on demand,
+ * reported as the `tokens` counter (tokens parsed per second)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"1000000"})
+    public int sourceChars;
+
+    private String source;
+
+    private List<Token> tokens;
+
+    @Setup
+    public void setup() {
+        source = Workloads.mixedSource(sourceChars);
+        tokens = new Scanner(source).scanTokens();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+    }
+
+    @Benchmark
+    public Object parse(Counters counters) {
+        List<Stmt> statements = new Parser(tokens).parse();
+        counters.tokens += tokens.size();
+        return statements;
+    }
+
+    /**
+     * scanning and parsing together, with tokens pulled on demand
+     */
+    @Benchmark
+    public Object scanAndParse(Counters counters) {
+        List<Stmt> statements = new Parser(new Scanner(source)).parse();
+        counters.tokens += tokens.size();
+        return statements;
+    }
+}
@@ -0,0 +1,53 @@
+package com.coiggahou.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getting a runnable Program for a script that has been run before:
+ *
+ *    compile: scan, parse, optimize and resolve it again
+ *    cached:  hash the source and look it up in a ProgramCache
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProgramCacheBenchmark {
+
+    private String source;
+
+    private LoxEngine engine;
+
+    private ProgramCache cache;
+
+    @Setup
+    public void setup() {
+        source = Workloads.mixedSource(50_000);
+        engine = new LoxEngine();
+        cache = new ProgramCache(engine, 16);
+        cache.compile(source);
+    }
+
+    @Benchmark
+    public Object compile() {
+        return engine.compile(source);
+    }
+
+    @Benchmark
+    public Object cached() {
+        return cache.compile(source);
+    }
+}
@@ -0,0 +1,82 @@
+package com.coiggahou.lox;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * throughput of Scanner.scanTokens() and Scanner.nextToken(),
+ * reported as the `megabytes` counter (MB of source scanned per second)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+    @Param({"1000000"})
+    public int sourceChars;
+
+    /**
+     * mixed:   every kind of statement
+     * numbers: a generated data table, nearly all number literals
+     */
+    @Param({"mixed", "numbers"})
+    public String workload;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = workload.equals("numbers")
+                ? Workloads.numberTable(sourceChars)
+                : Workloads.mixedSource(sourceChars);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Benchmark
+    public List<Token> scanTokens(Counters counters) {
+        List<Token> tokens = new Scanner(source).scanTokens();
+        counters.megabytes += source.length() / 1e6;
+        return tokens;
+    }
+
+    /**
+     * pulling the tokens one by one, without keeping them in a list
+     */
+    @Benchmark
+    public int nextToken(Counters counters) {
+        Scanner scanner = new Scanner(source);
+        int count = 0;
+        while (scanner.nextToken().type != TokenType.EOF) {
+            count++;
+        }
+        counters.megabytes += source.length() / 1e6;
+        return count;
+    }
+}
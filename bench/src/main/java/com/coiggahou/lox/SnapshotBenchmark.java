@@ -0,0 +1,68 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.util.SourceFiles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getting the syntax tree of a ~200KB script:
+ *
+ *    parse:        Scanner + Parser over the source
+ *    loadSnapshot: Snapshot.read() of the file written next to it,
+ *                  including hashing the source to validate the snapshot
+ *    hashOnly:     just the hashing part of loadSnapshot
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    private String source;
+
+    private Path snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        source = Workloads.mixedSource(200_000);
+        snapshot = Files.createTempFile("bench", ".lox.snap");
+        Snapshot.write(snapshot, source, new Parser(new Scanner(source)).parse());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return new Parser(new Scanner(source)).parse();
+    }
+
+    @Benchmark
+    public Object loadSnapshot() throws IOException {
+        return Snapshot.read(snapshot, source);
+    }
+
+    @Benchmark
+    public void hashOnly(Blackhole blackhole) {
+        blackhole.consume(SourceFiles.sha256(source));
+    }
+}
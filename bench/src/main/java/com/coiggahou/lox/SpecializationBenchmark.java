@@ -0,0 +1,64 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.output.AppendableOutputSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the same programs run with the BinaryExprs and AssignExprs
+ * specialized after their first run (see Specialization),
+ * and always run the generic way
+ *
+ *    numericLoop: `while (i < n)`, `i = i + 1` and arithmetic on locals
+ *    forLoop:     nested `for` loops counting with `i < n` and `i = i + 1`
+ *    fib:         `n < 2`, `n - 1` and `+` on the results of calls
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpecializationBenchmark {
+
+    @Param({"numericLoop", "forLoop", "fib"})
+    public String workload;
+
+    @Param({"true", "false"})
+    public boolean specialize;
+
+    private List<Stmt> statements;
+
+    @Setup
+    public void setup() {
+        String source = switch (workload) {
+            case "numericLoop" -> Workloads.numericLoop(1_000_000);
+            case "forLoop" -> Workloads.forLoop(100_000);
+            case "fib" -> Workloads.fib(25);
+            default -> throw new IllegalArgumentException("unknown workload " + workload);
+        };
+        statements = new Parser(new Scanner(source)).parse();
+        new Resolver().resolve(statements);
+    }
+
+    @Benchmark
+    public Object interpret() {
+        StringBuilder out = new StringBuilder();
+        Interpreter interpreter = new Interpreter(new AppendableOutputSink(out));
+        if (!specialize) interpreter.withoutSpecialization();
+        interpreter.interpret(statements);
+        return out;
+    }
+}
@@ -0,0 +1,51 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.output.AppendableOutputSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * building a string of `lines` lines of 100 chars with `s = s + line;`,
+ * from 1.25MB up to 10MB
+ *
+ * the time should double with `lines`, as appending to a LoxString is amortized O(1)
+ * (with java String concatenation it went up four times)
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringBuildBenchmark {
+
+    @Param({"12500", "25000", "50000", "100000"})
+    public int lines;
+
+    private List<Stmt> statements;
+
+    @Setup
+    public void setup() {
+        statements = new Parser(new Scanner(Workloads.buildString(lines))).parse();
+        new Resolver().resolve(statements);
+    }
+
+    @Benchmark
+    public Object build() {
+        StringBuilder out = new StringBuilder();
+        new Interpreter(new AppendableOutputSink(out)).interpret(statements);
+        return out;
+    }
+}
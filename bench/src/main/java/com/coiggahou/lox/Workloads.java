@@ -0,0 +1,215 @@
+package com.coiggahou.lox;
+
+/**
+ * generators of the Lox programs used by the benchmarks
+ *
+ * they are generated instead of checked in,
+ * so their size can be scaled by a parameter
+ */
+final class Workloads {
+
+    private Workloads() {
+    }
+
+    /**
+     * a counting loop doing arithmetic on locals
+     */
+    static String numericLoop(int iterations) {
+        return "{\n"
+             + "  var i = 0;\n"
+             + "  var sum = 0;\n"
+             + "  while (i < " + iterations + ") {\n"
+             + "    sum = sum + i * 2 - i / 2;\n"
+             + "    i = i + 1;\n"
+             + "  }\n"
+             + "  print sum;\n"
+             + "}\n";
+    }
+
+    /**
+     * the naive recursive fibonacci, nearly all calls and returns
+     */
+    static String fib(int n) {
+        return "fun fib(n) {\n"
+             + "  if (n < 2) return n;\n"
+             + "  return fib(n - 1) + fib(n - 2);\n"
+             + "}\n"
+             + "print fib(" + n + ");\n";
+    }
+
+    /**
+     * a nested counting loop written with `for`
+     */
+    static String forLoop(int iterations) {
+        return "var sum = 0;\n"
+             + "for (var i = 0; i < " + iterations + "; i = i + 1) {\n"
+             + "  for (var j = 0; j < 10; j = j + 1) {\n"
+             + "    sum = sum + j;\n"
+             + "  }\n"
+             + "}\n"
+             + "print sum;\n";
+    }
+
+    /**
+     * forLoop() desugared by hand into blocks and `while`,
+     * the way scripts wrote it before there was `for`
+     */
+    static String desugaredForLoop(int iterations) {
+        return "var sum = 0;\n"
+             + "{\n"
+             + "  var i = 0;\n"
+             + "  while (i < " + iterations + ") {\n"
+             + "    {\n"
+             + "      var j = 0;\n"
+             + "      while (j < 10) {\n"
+             + "        {\n"
+             + "          sum = sum + j;\n"
+             + "        }\n"
+             + "        j = j + 1;\n"
+             + "      }\n"
+             + "    }\n"
+             + "    i = i + 1;\n"
+             + "  }\n"
+             + "}\n"
+             + "print sum;\n";
+    }
+
+    /**
+     * a loop in the innermost of `depth` nested blocks,
+     * reading variables declared at every level of nesting
+     */
+    static String deepNesting(int depth, int iterations) {
+        StringBuilder sb = new StringBuilder();
+        for (int d = 0; d < depth; d++) {
+            sb.append("{\n").append("var v").append(d).append(" = ").append(d).append(";\n");
+        }
+        sb.append("var i = 0;\n");
+        sb.append("var acc = 0;\n");
+        sb.append("while (i < ").append(iterations).append(") {\n");
+        sb.append("  acc = acc + v0 + v").append(depth / 2).append(" + v").append(depth - 1).append(";\n");
+        sb.append("  i = i + 1;\n");
+        sb.append("}\n");
+        sb.append("print acc;\n");
+        for (int d = 0; d < depth; d++) {
+            sb.append("}\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * building a string by repeated `s = s + ...` in a loop
+     */
+    static String stringConcat(int iterations) {
+        return "{\n"
+             + "  var s = \"\";\n"
+             + "  var i = 0;\n"
+             + "  while (i < " + iterations + ") {\n"
+             + "    s = s + \"line \" + i + \"\\n\";\n"
+             + "    i = i + 1;\n"
+             + "  }\n"
+             + "  print s == \"\";\n"
+             + "}\n";
+    }
+
+    /**
+     * a report-like script: one print for each iteration
+     */
+    static String printLines(int lines) {
+        return "{\n"
+             + "  var i = 0;\n"
+             + "  while (i < " + lines + ") {\n"
+             + "    print \"row \" + i + \": \" + i * 2;\n"
+             + "    i = i + 1;\n"
+             + "  }\n"
+             + "}\n";
+    }
+
+    /**
+     * `count` globals, read and written from inside a nested loop
+     */
+    static String manyGlobals(int count, int iterations) {
+        StringBuilder sb = new StringBuilder();
+        for (int g = 0; g < count; g++) {
+            sb.append("var g").append(g).append(" = ").append(g).append(";\n");
+        }
+        sb.append("var total = 0;\n");
+        sb.append("{\n");
+        sb.append("  var i = 0;\n");
+        sb.append("  while (i < ").append(iterations).append(") {\n");
+        for (int g = 0; g < count; g += Math.max(1, count / 8)) {
+            sb.append("    total = total + g").append(g).append(";\n");
+        }
+        sb.append("    i = i + 1;\n");
+        sb.append("  }\n");
+        sb.append("}\n");
+        sb.append("print total;\n");
+        return sb.toString();
+    }
+
+    /**
+     * a string of `lines` lines of 100 chars, built with `s = s + line;`
+     * in a loop, and printed once at the end
+     */
+    static String buildString(int lines) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("var line = \"").append("x".repeat(100)).append("\";\n");
+        sb.append("var s = \"\";\n");
+        sb.append("{\n");
+        sb.append("  var i = 0;\n");
+        sb.append("  while (i < ").append(lines).append(") {\n");
+        sb.append("    s = s + line;\n");
+        sb.append("    i = i + 1;\n");
+        sb.append("  }\n");
+        sb.append("}\n");
+        sb.append("print s == \"\";\n");
+        return sb.toString();
+    }
+
+    /**
+     * a generated data table: rows of sums of number literals,
+     * mostly small integers, with some decimals and large integers
+     * @param approxChars approximate length of the source
+     */
+    static String numberTable(int approxChars) {
+        StringBuilder sb = new StringBuilder(approxChars + 256);
+        int n = 0;
+        while (sb.length() < approxChars) {
+            sb.append("print ").append(n % 100);
+            sb.append(" + ").append(n % 7);
+            sb.append(" + ").append(n * 37 % 1000).append('.').append(n % 100);
+            sb.append(" + ").append(1_000_000 + n);
+            sb.append(" + 0 + 1;\n");
+            n++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * a large program mixing every kind of statement,
+     * as input for scanning and parsing only (it is never executed)
+     * @param approxChars approximate length of the source
+     */
+    static String mixedSource(int approxChars) {
+        StringBuilder sb = new StringBuilder(approxChars + 256);
+        int n = 0;
+        while (sb.length() < approxChars) {
+            sb.append("// block ").append(n).append('\n');
+            sb.append("var counter_").append(n).append(" = ").append(n).append(".5;\n");
+            sb.append("var name_").append(n).append(" = \"item ").append(n).append("\";\n");
+            sb.append("{\n");
+            sb.append("  var i = 0;\n");
+            sb.append("  while (i < 10 and counter_").append(n).append(" >= 0) {\n");
+            sb.append("    if (i == 3 or !(i != 4)) {\n");
+            sb.append("      print name_").append(n).append(" + i;\n");
+            sb.append("    }\n");
+            sb.append("    else {\n");
+            sb.append("      counter_").append(n).append(" = counter_").append(n).append(" - (i * 2) / 3;\n");
+            sb.append("    }\n");
+            sb.append("    i = i + 1;\n");
+            sb.append("  }\n");
+            sb.append("}\n");
+            n++;
+        }
+        return sb.toString();
+    }
+}
@@ -72,6 +72,16 @@ public class AstPrinter implements Expr.Visitor<String>{
         return null;
     }
 
+    @Override
+    public String visitCallExpr(Expr.CallExpr expr) {
+        Expr[] exprs = new Expr[expr.arguments.size() + 1];
+        exprs[0] = expr.callee;
+        for (int i = 0; i < expr.arguments.size(); i++) {
+            exprs[i + 1] = expr.arguments.get(i);
+        }
+        return parenthesize("call", exprs);
+    }
+
     // just for test
     public static void main(String[] args) {
         Expr expression = new Expr.BinaryExpr(
@@ -0,0 +1,276 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.ScriptError;
+import com.coiggahou.lox.output.AppendableOutputSink;
+import com.coiggahou.lox.util.SourceFiles;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * runs many scripts at once in one JVM, one thread per script
+ *
+ *      BatchRunner runner = new BatchRunner(engine, 8);
+ *      BatchRunner.Report report = runner.run(BatchRunner.scripts(Paths.get("scripts/")));
+ *
+ * every script is run with its own globals (a Session of its own)
+ * and its output captured, to be looked at when all are done
+ *
+ * the threads are virtual threads when the JVM has them (21+),
+ * found by reflection as we build for 17, otherwise (on 17) a pool of platform threads,
+ * of at most MAX_THREADS_PER_CPU threads a processor, as every one of them is an OS thread
+ * either way, at most `concurrency` scripts run at the same time
+ *
+ * the scripts are compiled through a ProgramCache,
+ * so a script listed more than once (e.g. to load test it) is compiled once
+ */
+public final class BatchRunner {
+
+    private static final int MAX_THREADS_PER_CPU = 4;
+
+    private final LoxEngine engine;
+
+    private final ProgramCache cache;
+
+    private final int concurrency;
+
+    public BatchRunner(LoxEngine engine, int concurrency) {
+        if (concurrency <= 0) throw new IllegalArgumentException("concurrency must be positive");
+        this.engine = engine;
+        this.cache = new ProgramCache(engine, 256);
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * the scripts to run:
+     *    1. of a directory, its `.lox` and `.txt` files, by name
+     *    2. of a manifest file, the paths listed in it, one per line,
+     *       relative to the manifest, skipping blank lines and `#` comments
+     */
+    public static List<Path> scripts(Path directoryOrManifest) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        if (Files.isDirectory(directoryOrManifest)) {
+            try (Stream<Path> files = Files.list(directoryOrManifest)) {
+                files.filter(Files::isRegularFile)
+                     .filter(file -> file.toString().endsWith(".lox") || file.toString().endsWith(".txt"))
+                     .sorted()
+                     .forEach(scripts::add);
+            }
+            return scripts;
+        }
+
+        Path base = directoryOrManifest.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(directoryOrManifest, Charset.defaultCharset())) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            scripts.add(base.resolve(line));
+        }
+        return scripts;
+    }
+
+    /**
+     * run all the scripts, and wait for all of them
+     */
+    public Report run(List<Path> scripts) {
+        Semaphore permits = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        ExecutorService executor = newExecutor(concurrency);
+        try {
+            List<Future<ScriptResult>> futures = new ArrayList<>(scripts.size());
+            for (Path script : scripts) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return run(script);
+                    }
+                    finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<ScriptResult> results = new ArrayList<>(scripts.size());
+            for (Future<ScriptResult> future : futures) {
+                results.add(future.get());
+            }
+            return new Report(results, System.nanoTime() - start);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running the batch", e);
+        }
+        catch (ExecutionException e) {
+            // run(Path) reports everything that can go wrong with a script in its result,
+            // so only the executor itself can get here
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ScriptResult run(Path script) {
+        long start = System.nanoTime();
+        StringBuilder output = new StringBuilder();
+        try {
+            ExecutionResult result = execute(script, output);
+            return new ScriptResult(script, output.toString(), result.exitCode(), result.errors(), System.nanoTime() - start);
+        }
+        catch (IOException e) {
+            ScriptError error = new ScriptError(0, "", "Cannot read script: " + e.getMessage(), false);
+            return new ScriptResult(script, "", 66, List.of(error), System.nanoTime() - start);
+        }
+        catch (Throwable e) {
+            // e.g. an OutOfMemoryError, or a bug of ours: only this script fails, not the batch
+            if (e instanceof OutOfMemoryError) {
+                // the cached Programs keep the globals of their last runs alive (see Program),
+                // which is likely what filled the heap
+                cache.clear();
+            }
+            ScriptError error = new ScriptError(0, "", "Internal error: " + e, true);
+            return new ScriptResult(script, output.toString(), 70, List.of(error), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * in a method of its own, so nothing of the run is left on the stack
+     * when run(Path) handles what it threw
+     */
+    private ExecutionResult execute(Path script, StringBuilder output) throws IOException {
+        Program program = cache.compile(SourceFiles.map(script, Charset.defaultCharset()));
+        return engine.execute(program, new AppendableOutputSink(output));
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() if there is one,
+     * otherwise a pool of platform threads no larger than the processors can keep busy
+     */
+    private static ExecutorService newExecutor(int concurrency) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            int threads = Math.min(concurrency, MAX_THREADS_PER_CPU * Runtime.getRuntime().availableProcessors());
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "lox-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * what happened to one script
+     */
+    public static final class ScriptResult {
+        private final Path script;
+        private final String output;
+
+        /**
+         * as jlox would exit with for the script alone,
+         * 66 if it could not be read (see sysexits.h)
+         */
+        private final int exitCode;
+
+        private final List<ScriptError> errors;
+
+        /**
+         * compiling and running
+         */
+        private final long nanos;
+
+        ScriptResult(Path script, String output, int exitCode, List<ScriptError> errors, long nanos) {
+            this.script = script;
+            this.output = output;
+            this.exitCode = exitCode;
+            this.errors = errors;
+            this.nanos = nanos;
+        }
+
+        public Path script() {
+            return script;
+        }
+
+        public String output() {
+            return output;
+        }
+
+        public int exitCode() {
+            return exitCode;
+        }
+
+        public List<ScriptError> errors() {
+            return errors;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * the results of a batch, in the order of the scripts given
+     */
+    public static final class Report {
+        private final List<ScriptResult> results;
+        private final long wallNanos;
+
+        Report(List<ScriptResult> results, long wallNanos) {
+            this.results = List.copyOf(results);
+            this.wallNanos = wallNanos;
+        }
+
+        public List<ScriptResult> results() {
+            return results;
+        }
+
+        public long failed() {
+            return results.stream().filter(result -> result.exitCode != 0).count();
+        }
+
+        /**
+         * the largest exit code of the scripts, 0 if all of them succeeded
+         */
+        public int exitCode() {
+            return results.stream().mapToInt(ScriptResult::exitCode).max().orElse(0);
+        }
+
+        /**
+         * scripts run, throughput over the whole batch,
+         * and the latency (compiling and running) of a script
+         */
+        public void writeSummary(Appendable out) throws IOException {
+            long[] latencies = results.stream().mapToLong(ScriptResult::nanos).sorted().toArray();
+            double seconds = wallNanos / 1e9;
+            out.append(String.format(Locale.ROOT, "[batch] %d scripts, %d failed, in %.1f ms (%.1f scripts/s)%n",
+                    results.size(), failed(), wallNanos / 1e6, seconds == 0 ? 0 : results.size() / seconds));
+            if (latencies.length == 0) return;
+            out.append(String.format(Locale.ROOT, "[batch] latency ms: mean %.3f  p50 %.3f  p90 %.3f  p99 %.3f  max %.3f%n",
+                    Arrays.stream(latencies).average().orElse(0) / 1e6,
+                    percentile(latencies, 50) / 1e6, percentile(latencies, 90) / 1e6,
+                    percentile(latencies, 99) / 1e6, latencies[latencies.length - 1] / 1e6));
+        }
+
+        /**
+         * nearest-rank percentile of sorted values
+         */
+        private static long percentile(long[] sorted, int percent) {
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+    }
+}
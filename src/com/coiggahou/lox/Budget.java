@@ -0,0 +1,149 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.ExecutionLimitError;
+import com.coiggahou.lox.error.ExecutionLimitError.Limit;
+
+/**
+ * what is left of the ExecutionLimits of one run,
+ * charged by the Interpreter (and the VM) as the run goes on
+ *
+ * a step is charged at every loop back-edge and call,
+ * which is all it takes for a run to go on forever
+ * (a block entry is not charged: without a loop or a call there are only so many)
+ *
+ * charging a step only counts down: the rest (the total of steps, the clock, cancelling)
+ * is looked at when the countdown runs out, every CHECK_INTERVAL steps at most,
+ * so a run without limits pays one decrement and one branch per step
+ *
+ * NOTE:
+ *  a Budget belongs to one run on one thread,
+ *  only the Session it looks at for cancelling is shared with other threads
+ */
+final class Budget {
+
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final ExecutionLimits limits;
+
+    /**
+     * cancelled from another thread, null if the run can't be cancelled
+     */
+    private final Session session;
+
+    private final long start = System.nanoTime();
+
+    /**
+     * steps charged before the current period,
+     * and steps left in it before the next check
+     */
+    private long counted;
+    private long period;
+    private long countdown;
+
+    private long environments;
+
+    private int scopes;
+
+    Budget(ExecutionLimits limits, Session session) {
+        this.limits = limits;
+        this.session = session;
+        this.period = Math.min(CHECK_INTERVAL, limits.maxSteps);
+        this.countdown = period;
+    }
+
+    /**
+     * a budget without limits, which can't be cancelled either
+     */
+    static Budget unlimited() {
+        return new Budget(ExecutionLimits.NONE, null);
+    }
+
+    /**
+     * charge a step at a loop,
+     * whose line is only found if it goes over
+     */
+    void step(Stmt at) {
+        if (--countdown < 0) check(at, -1);
+    }
+
+    void step(int line) {
+        if (--countdown < 0) check(null, line);
+    }
+
+    /**
+     * the whole period has been taken, and this step is the first after it
+     */
+    private void check(Stmt at, int line) {
+        counted += period;
+        if (counted >= limits.maxSteps) {
+            throw error(at, line, Limit.STEPS, String.format("Execution exceeded %d steps.", limits.maxSteps));
+        }
+        checkTimeAndCancel(at, line);
+        period = Math.min(CHECK_INTERVAL, limits.maxSteps - counted);
+        countdown = period - 1;
+    }
+
+    private void checkTimeAndCancel(Stmt at, int line) {
+        if (session != null && session.isCancelled()) {
+            throw error(at, line, Limit.CANCELLED, "Execution cancelled.");
+        }
+        if (limits.timeoutNanos != Long.MAX_VALUE && System.nanoTime() - start > limits.timeoutNanos) {
+            throw error(at, line, Limit.TIMEOUT,
+                        String.format("Execution timed out after %d ms.", limits.timeoutNanos / 1_000_000));
+        }
+    }
+
+    /**
+     * an Environment (of a block, a `for` loop or a call) or a function is made,
+     * a reused frame of a call is not counted again
+     */
+    void allocate(Stmt at) {
+        if (++environments > limits.maxEnvironments) throw tooManyEnvironments(at, -1);
+    }
+
+    void allocate(int line) {
+        if (++environments > limits.maxEnvironments) throw tooManyEnvironments(null, line);
+    }
+
+    /**
+     * a scope is made for a block, a `for` loop or a call (only on the Interpreter),
+     * every enterScope() which returns must be followed by an exitScope()
+     */
+    void enterScope(Stmt at) {
+        if (scopes == limits.maxScopes) throw tooManyScopes(at, -1);
+        scopes++;
+    }
+
+    void enterScope(int line) {
+        if (scopes == limits.maxScopes) throw tooManyScopes(null, line);
+        scopes++;
+    }
+
+    void exitScope() {
+        scopes--;
+    }
+
+    /**
+     * @return the string, if it is not too long
+     */
+    <S extends CharSequence> S checkLength(S string, int line) {
+        if (string.length() > limits.maxStringLength) {
+            throw new ExecutionLimitError(line, Limit.STRING_LENGTH,
+                    String.format("String longer than %d chars.", limits.maxStringLength));
+        }
+        return string;
+    }
+
+    private ExecutionLimitError tooManyEnvironments(Stmt at, int line) {
+        return error(at, line, Limit.ENVIRONMENTS,
+                     String.format("Execution made more than %d environments.", limits.maxEnvironments));
+    }
+
+    private ExecutionLimitError tooManyScopes(Stmt at, int line) {
+        return error(at, line, Limit.SCOPES, String.format("Execution exceeded %d nested scopes.", limits.maxScopes));
+    }
+
+    private static ExecutionLimitError error(Stmt at, int line, Limit limit, String message) {
+        return new ExecutionLimitError(at != null ? LineFinder.line(at) : line, limit, message);
+    }
+}
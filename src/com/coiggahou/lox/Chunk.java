@@ -0,0 +1,84 @@
+package com.coiggahou.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a compiled piece of bytecode
+ *
+ * it holds
+ *    1. code:      the instructions and their operands
+ *    2. lines:     the source line of every byte in code, for error reporting
+ *    3. constants: the constant pool (numbers, strings and variable names)
+ */
+class Chunk {
+
+    private byte[] code = new byte[64];
+    private int[] lines = new int[64];
+    private int count = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+
+    /**
+     * so that the same literal (or variable name) used many times
+     * takes only one entry in the constant pool
+     */
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    /**
+     * the max number of stack slots the code may use, computed by the Compiler
+     */
+    int maxStack = 0;
+
+    void write(byte b, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = b;
+        lines[count] = line;
+        count++;
+    }
+
+    /**
+     * overwrite an already written byte, used for back-patching jumps
+     */
+    void set(int offset, byte b) {
+        code[offset] = b;
+    }
+
+    /**
+     * @return index of the value in the constant pool
+     */
+    int addConstant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndex.put(value, index);
+        }
+        return index;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * the code trimmed to its actual length
+     */
+    byte[] code() {
+        return Arrays.copyOf(code, count);
+    }
+
+    int line(int offset) {
+        return lines[offset];
+    }
+
+    Object[] constants() {
+        return constants.toArray();
+    }
+}
@@ -0,0 +1,480 @@
+package com.coiggahou.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.coiggahou.lox.TokenType.OR;
+
+/**
+ * compiles the syntax tree into a Chunk of bytecode for the VM
+ *
+ * local variables live on the VM stack,
+ * a variable declared in a block takes the stack slot right above
+ * all the locals of the enclosing blocks,
+ * and is popped when the block ends
+ */
+class Compiler implements Expr.Visitor<Void>,
+                          Stmt.Visitor<Void> {
+
+    static class CompileError extends RuntimeException {
+        final int line;
+
+        CompileError(int line, String message) {
+            super(message);
+            this.line = line;
+        }
+    }
+
+    /**
+     * the program uses something the VM doesn't have (functions),
+     * the LoxEngine runs it on the Interpreter instead
+     */
+    static class UnsupportedError extends CompileError {
+        UnsupportedError(int line, String message) {
+            super(line, message);
+        }
+    }
+
+    private static final int MAX_OPERAND = 0xffff;
+
+    private final Chunk chunk = new Chunk();
+
+    /**
+     * stack of the block scopes enclosing the code being compiled,
+     * each maps a variable name to its stack slot
+     */
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+
+    /**
+     * number of locals currently alive on the stack
+     */
+    private int localCount = 0;
+
+    /**
+     * number of values on the stack at the current point of the code,
+     * used to compute Chunk.maxStack
+     */
+    private int stackDepth = 0;
+
+    /**
+     * line of the latest token we've met,
+     * used for instructions that don't have a token of their own
+     */
+    private int line = 1;
+
+    Chunk compile(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+        emit(OpCode.RETURN);
+        return chunk;
+    }
+
+    /**
+     * compile a single expression of the REPL,
+     * which prints its value
+     */
+    Chunk compileExpression(Expr expression) {
+        compile(expression);
+        emit(OpCode.PRINT);
+        emit(OpCode.RETURN);
+        return chunk;
+    }
+
+    private void compile(Stmt stmt) {
+        if (stmt == null) return;
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    private void emit(byte op) {
+        chunk.write(op, line);
+        stackDepth += stackEffect(op);
+        if (stackDepth > chunk.maxStack) {
+            chunk.maxStack = stackDepth;
+        }
+    }
+
+    private void emit(byte op, int operand) {
+        emit(op);
+        emitOperand(operand);
+    }
+
+    private void emitOperand(int operand) {
+        chunk.write((byte) (operand >> 8), line);
+        chunk.write((byte) operand, line);
+    }
+
+    private static int stackEffect(byte op) {
+        switch (op) {
+            case OpCode.CONSTANT, OpCode.NIL, OpCode.TRUE, OpCode.FALSE,
+                 OpCode.GET_LOCAL, OpCode.GET_GLOBAL -> {
+                return 1;
+            }
+            case OpCode.POP, OpCode.DEFINE_GLOBAL, OpCode.PRINT,
+                 OpCode.EQUAL, OpCode.NOT_EQUAL,
+                 OpCode.GREATER, OpCode.GREATER_EQUAL, OpCode.LESS, OpCode.LESS_EQUAL,
+                 OpCode.ADD, OpCode.SUBTRACT, OpCode.MULTIPLY, OpCode.DIVIDE -> {
+                return -1;
+            }
+        }
+        return 0;
+    }
+
+    private int constant(Object value) {
+        int index = chunk.addConstant(value);
+        if (index > MAX_OPERAND) {
+            throw new CompileError(line, "Too many constants in one chunk.");
+        }
+        return index;
+    }
+
+    /**
+     * emit a jump with a placeholder offset
+     * @return where the offset is, for patchJump()
+     */
+    private int emitJump(byte op) {
+        emit(op);
+        emitOperand(MAX_OPERAND);
+        return chunk.count() - 2;
+    }
+
+    /**
+     * make the jump at `offset` land on the next instruction to be emitted
+     */
+    private void patchJump(int offset) {
+        int jump = chunk.count() - offset - 2;
+        if (jump > MAX_OPERAND) {
+            throw new CompileError(line, "Too much code to jump over.");
+        }
+        chunk.set(offset, (byte) (jump >> 8));
+        chunk.set(offset + 1, (byte) jump);
+    }
+
+    private void emitLoop(int loopStart) {
+        emit(OpCode.LOOP);
+        int offset = chunk.count() - loopStart + 2;
+        if (offset > MAX_OPERAND) {
+            throw new CompileError(line, "Loop body too large.");
+        }
+        emitOperand(offset);
+    }
+
+    private void beginScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void endScope() {
+        Map<String, Integer> scope = scopes.remove(scopes.size() - 1);
+        for (int i = 0; i < scope.size(); i++) {
+            emit(OpCode.POP);
+        }
+        localCount -= scope.size();
+    }
+
+    /**
+     * @return stack slot of the local variable, or -1 if it is a global
+     */
+    private int resolveLocal(Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Integer slot = scopes.get(i).get(name.lexeme);
+            if (slot != null) return slot;
+        }
+        return -1;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.BinaryExpr expr) {
+        compile(expr.left);
+        compile(expr.right);
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case PLUS          -> emit(OpCode.ADD);
+            case MINUS         -> emit(OpCode.SUBTRACT);
+            case STAR          -> emit(OpCode.MULTIPLY);
+            case SLASH         -> emit(OpCode.DIVIDE);
+            case GREATER       -> emit(OpCode.GREATER);
+            case GREATER_EQUAL -> emit(OpCode.GREATER_EQUAL);
+            case LESS          -> emit(OpCode.LESS);
+            case LESS_EQUAL    -> emit(OpCode.LESS_EQUAL);
+            case EQUAL_EQUAL   -> emit(OpCode.EQUAL);
+            case BANG_EQUAL    -> emit(OpCode.NOT_EQUAL);
+            default -> throw new CompileError(line, "Unknown binary operator.");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.UnaryExpr expr) {
+        compile(expr.right);
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case BANG  -> emit(OpCode.NOT);
+            case MINUS -> emit(OpCode.NEGATE);
+            default -> throw new CompileError(line, "Unknown unary operator.");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.GroupingExpr expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.LiteralExpr expr) {
+        if (expr.value == null) {
+            emit(OpCode.NIL);
+        }
+        else if (expr.value instanceof Boolean) {
+            emit((boolean) expr.value ? OpCode.TRUE : OpCode.FALSE);
+        }
+        else {
+            emit(OpCode.CONSTANT, constant(expr.value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarExpr(Expr.VarExpr expr) {
+        line = expr.identifier.line;
+        int slot = resolveLocal(expr.identifier);
+        if (slot >= 0) {
+            emit(OpCode.GET_LOCAL, slot);
+        }
+        else {
+            emit(OpCode.GET_GLOBAL, constant(expr.identifier.lexeme));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.AssignExpr expr) {
+        compile(expr.assigner);
+        line = expr.assignee.line;
+        int slot = resolveLocal(expr.assignee);
+        if (slot >= 0) {
+            emit(OpCode.SET_LOCAL, slot);
+        }
+        else {
+            emit(OpCode.SET_GLOBAL, constant(expr.assignee.lexeme));
+        }
+        return null;
+    }
+
+    /**
+     * functions are only run by the Interpreter for now
+     */
+    @Override
+    public Void visitCallExpr(Expr.CallExpr expr) {
+        throw new UnsupportedError(expr.paren.line, "Function calls are not supported by the VM.");
+    }
+
+    /**
+     * `A and B`:               `A or B`:
+     *      A                       A
+     *      JUMP_IF_FALSE end       JUMP_IF_FALSE right
+     *      POP                     JUMP end
+     *      B                   right:
+     *  end:                        POP
+     *                              B
+     *                          end:
+     */
+    @Override
+    public Void visitLogicExpr(Expr.LogicExpr expr) {
+        compile(expr.left);
+        line = expr.operator.line;
+        if (expr.operator.type == OR) {
+            int rightJump = emitJump(OpCode.JUMP_IF_FALSE);
+            int endJump = emitJump(OpCode.JUMP);
+            patchJump(rightJump);
+            emit(OpCode.POP);
+            compile(expr.right);
+            patchJump(endJump);
+        }
+        else {
+            int endJump = emitJump(OpCode.JUMP_IF_FALSE);
+            emit(OpCode.POP);
+            compile(expr.right);
+            patchJump(endJump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.ExpressionStmt stmt) {
+        compile(stmt.expr);
+        emit(OpCode.POP);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.PrintStmt stmt) {
+        compile(stmt.expr);
+        emit(OpCode.PRINT);
+        return null;
+    }
+
+    /**
+     * just like the Resolver,
+     * the initializer is compiled BEFORE the name is declared
+     *
+     * a new local simply stays on the stack where its initializer left it,
+     * while redefining a local of the same block overwrites the old slot
+     */
+    @Override
+    public Void visitDeclarationStmt(Stmt.DeclarationStmt stmt) {
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        }
+        else {
+            emit(OpCode.NIL);
+        }
+        line = stmt.name.line;
+
+        if (scopes.isEmpty()) {
+            emit(OpCode.DEFINE_GLOBAL, constant(stmt.name.lexeme));
+            return null;
+        }
+
+        Map<String, Integer> scope = scopes.get(scopes.size() - 1);
+        Integer slot = scope.get(stmt.name.lexeme);
+        if (slot != null) {
+            emit(OpCode.SET_LOCAL, slot);
+            emit(OpCode.POP);
+        }
+        else {
+            if (localCount > MAX_OPERAND) {
+                throw new CompileError(line, "Too many local variables.");
+            }
+            scope.put(stmt.name.lexeme, localCount++);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.BlockStmt stmt) {
+        if (stmt.scoped) beginScope();
+        for (Stmt statement : stmt.declarations) {
+            compile(statement);
+        }
+        if (stmt.scoped) endScope();
+        return null;
+    }
+
+    /**
+     *      cond
+     *      JUMP_IF_FALSE else
+     *      POP
+     *      then
+     *      JUMP end
+     *  else:
+     *      POP
+     *      else
+     *  end:
+     */
+    @Override
+    public Void visitIfStmt(Stmt.IfStmt stmt) {
+        compile(stmt.condition);
+        int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP);
+        compile(stmt.thenBranch);
+        int endJump = emitJump(OpCode.JUMP);
+
+        patchJump(elseJump);
+        // the condition is still on the stack when we jump here
+        stackDepth++;
+        emit(OpCode.POP);
+        compile(stmt.elseBranch);
+        patchJump(endJump);
+        return null;
+    }
+
+    /**
+     *  start:
+     *      cond
+     *      JUMP_IF_FALSE exit
+     *      POP
+     *      body
+     *      LOOP start
+     *  exit:
+     *      POP
+     */
+    @Override
+    public Void visitWhileStmt(Stmt.WhileStmt stmt) {
+        int loopStart = chunk.count();
+        compile(stmt.condition);
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP);
+        compile(stmt.loopBody);
+        // a runaway loop is reported at the `while`
+        line = stmt.keyword.line;
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+        // the condition is still on the stack when we jump here
+        stackDepth++;
+        emit(OpCode.POP);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.FunctionStmt stmt) {
+        throw new UnsupportedError(stmt.name.line, "Functions are not supported by the VM.");
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.ReturnStmt stmt) {
+        throw new UnsupportedError(stmt.keyword.line, "Functions are not supported by the VM.");
+    }
+
+    /**
+     *      initializer
+     *  start:
+     *      cond
+     *      JUMP_IF_FALSE exit
+     *      POP
+     *      body
+     *      increment
+     *      POP
+     *      LOOP start
+     *  exit:
+     *      POP
+     *
+     * the loop variable is a local of a scope around the whole loop
+     */
+    @Override
+    public Void visitForStmt(Stmt.ForStmt stmt) {
+        if (stmt.scoped) beginScope();
+        compile(stmt.initializer);
+
+        int loopStart = chunk.count();
+        int exitJump = -1;
+        if (stmt.condition != null) {
+            compile(stmt.condition);
+            exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+            emit(OpCode.POP);
+        }
+        compile(stmt.loopBody);
+        if (stmt.increment != null) {
+            compile(stmt.increment);
+            emit(OpCode.POP);
+        }
+        line = stmt.keyword.line;
+        emitLoop(loopStart);
+
+        if (exitJump >= 0) {
+            patchJump(exitJump);
+            stackDepth++;
+            emit(OpCode.POP);
+        }
+        if (stmt.scoped) endScope();
+        return null;
+    }
+}
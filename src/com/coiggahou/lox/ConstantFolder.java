@@ -0,0 +1,268 @@
+package com.coiggahou.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.coiggahou.lox.Interpreter.isEqual;
+import static com.coiggahou.lox.Interpreter.isTruthy;
+import static com.coiggahou.lox.Interpreter.stringify;
+import static com.coiggahou.lox.TokenType.OR;
+
+/**
+ * an optimization pass that evaluates literal-only expressions ahead of time
+ *
+ * e.g.     (60 * 60) * 24      becomes     86400
+ *          "prefix" + "suffix"             "prefixsuffix"
+ *          true or x                       true
+ *          -(2)                            -2
+ * and grouping wrappers are removed
+ *
+ * NOTE:
+ *  anything that would raise a runtime error (like `1 - "a"`)
+ *  is left as it is, so the error is still reported when it runs
+ *
+ * the tree is immutable, so the folded tree is built as a new one,
+ * it must run BEFORE the Resolver, which annotates the final tree
+ */
+class ConstantFolder implements Expr.Visitor<Expr>,
+                                Stmt.Visitor<Stmt> {
+
+    /**
+     * marks a binary operation the folder leaves for the runtime
+     */
+    private static final Object CANNOT_FOLD = new Object();
+
+    /**
+     * longer concatenations are left for the runtime, where ExecutionLimits.maxStringLength
+     * applies to them, and a chain of `+` can't make folding itself take quadratic time
+     */
+    static final int MAX_FOLDED_STRING_LENGTH = 256;
+
+    /**
+     * number of nodes removed by the latest fold()
+     */
+    private int eliminated = 0;
+
+    List<Stmt> fold(List<Stmt> statements) {
+        NodeCounter counter = new NodeCounter();
+        int before = counter.count(statements);
+
+        List<Stmt> folded = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            folded.add(fold(statement));
+        }
+
+        eliminated = before - counter.count(folded);
+        return folded;
+    }
+
+    Expr fold(Expr expr) {
+        if (expr == null) return null;
+        return expr.accept(this);
+    }
+
+    int eliminated() {
+        return eliminated;
+    }
+
+    private Stmt fold(Stmt stmt) {
+        if (stmt == null) return null;
+        return stmt.accept(this);
+    }
+
+    private static boolean isLiteral(Expr expr) {
+        return expr instanceof Expr.LiteralExpr;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.BinaryExpr expr) {
+        Expr left = fold(expr.left);
+        Expr right = fold(expr.right);
+        if (isLiteral(left) && isLiteral(right)) {
+            Object l = ((Expr.LiteralExpr) left).value;
+            Object r = ((Expr.LiteralExpr) right).value;
+            Object value = evaluate(expr.operator, l, r);
+            if (value != CANNOT_FOLD) {
+                return new Expr.LiteralExpr(value);
+            }
+        }
+        return new Expr.BinaryExpr(left, expr.operator, right);
+    }
+
+    /**
+     * the same rules as Interpreter.visitBinaryExpr()
+     * @return the result, or CANNOT_FOLD if it would be a runtime error
+     */
+    private static Object evaluate(Token operator, Object l, Object r) {
+        boolean numbers = l instanceof Double && r instanceof Double;
+        switch (operator.type) {
+            case PLUS -> {
+                if (numbers) return (double) l + (double) r;
+                if (!(l instanceof String) && !(r instanceof String)) return CANNOT_FOLD;
+                String ls = l instanceof String ? (String) l : stringify(l);
+                String rs = r instanceof String ? (String) r : stringify(r);
+                if (ls.length() + rs.length() > MAX_FOLDED_STRING_LENGTH) return CANNOT_FOLD;
+                return ls + rs;
+            }
+            case EQUAL_EQUAL -> {
+                return isEqual(l, r);
+            }
+            case BANG_EQUAL -> {
+                return !isEqual(l, r);
+            }
+        }
+        if (!numbers) return CANNOT_FOLD;
+
+        double a = (double) l;
+        double b = (double) r;
+        switch (operator.type) {
+            case MINUS -> {
+                return a - b;
+            }
+            case STAR -> {
+                return a * b;
+            }
+            case SLASH -> {
+                return a / b;
+            }
+            case GREATER -> {
+                return a > b;
+            }
+            case GREATER_EQUAL -> {
+                return a >= b;
+            }
+            case LESS -> {
+                return a < b;
+            }
+            case LESS_EQUAL -> {
+                return a <= b;
+            }
+        }
+        return CANNOT_FOLD;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.UnaryExpr expr) {
+        Expr right = fold(expr.right);
+        if (isLiteral(right)) {
+            Object value = ((Expr.LiteralExpr) right).value;
+            switch (expr.operator.type) {
+                case BANG -> {
+                    return new Expr.LiteralExpr(!isTruthy(value));
+                }
+                case MINUS -> {
+                    if (value instanceof Double) {
+                        return new Expr.LiteralExpr(-(double) value);
+                    }
+                }
+            }
+        }
+        return new Expr.UnaryExpr(expr.operator, right);
+    }
+
+    /**
+     * a grouping only matters to the parser,
+     * the tree itself already tells the order of evaluation
+     */
+    @Override
+    public Expr visitGroupingExpr(Expr.GroupingExpr expr) {
+        return fold(expr.expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.LiteralExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitVarExpr(Expr.VarExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.AssignExpr expr) {
+        return new Expr.AssignExpr(expr.assignee, fold(expr.assigner));
+    }
+
+    /**
+     * with a literal on the left, we already know which side is the result
+     * `A and B` is A if A is falsey, otherwise B
+     * `A or B`  is A if A is truthy, otherwise B
+     */
+    @Override
+    public Expr visitLogicExpr(Expr.LogicExpr expr) {
+        Expr left = fold(expr.left);
+        Expr right = fold(expr.right);
+        if (isLiteral(left)) {
+            boolean truthy = isTruthy(((Expr.LiteralExpr) left).value);
+            if (expr.operator.type == OR) {
+                return truthy ? left : right;
+            }
+            return truthy ? right : left;
+        }
+        return new Expr.LogicExpr(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.CallExpr expr) {
+        List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            arguments.add(fold(argument));
+        }
+        return new Expr.CallExpr(fold(expr.callee), expr.paren, arguments);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.ExpressionStmt stmt) {
+        return new Stmt.ExpressionStmt(fold(stmt.expr));
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.PrintStmt stmt) {
+        return new Stmt.PrintStmt(fold(stmt.expr));
+    }
+
+    @Override
+    public Stmt visitDeclarationStmt(Stmt.DeclarationStmt stmt) {
+        return new Stmt.DeclarationStmt(stmt.name, fold(stmt.initializer));
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.BlockStmt stmt) {
+        List<Stmt> declarations = new ArrayList<>(stmt.declarations.size());
+        for (Stmt declaration : stmt.declarations) {
+            declarations.add(fold(declaration));
+        }
+        return new Stmt.BlockStmt(stmt.brace, declarations, stmt.scoped);
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.IfStmt stmt) {
+        return new Stmt.IfStmt(fold(stmt.condition), fold(stmt.thenBranch), fold(stmt.elseBranch));
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.WhileStmt stmt) {
+        return new Stmt.WhileStmt(stmt.keyword, fold(stmt.condition), fold(stmt.loopBody));
+    }
+
+    @Override
+    public Stmt visitForStmt(Stmt.ForStmt stmt) {
+        return new Stmt.ForStmt(stmt.keyword, fold(stmt.initializer), fold(stmt.condition),
+                                fold(stmt.increment), fold(stmt.loopBody));
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.FunctionStmt stmt) {
+        List<Stmt> body = new ArrayList<>(stmt.body.size());
+        for (Stmt statement : stmt.body) {
+            body.add(fold(statement));
+        }
+        return new Stmt.FunctionStmt(stmt.name, stmt.params, body);
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.ReturnStmt stmt) {
+        return new Stmt.ReturnStmt(stmt.keyword, fold(stmt.value));
+    }
+}
@@ -0,0 +1,167 @@
+package com.coiggahou.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.coiggahou.lox.Interpreter.isTruthy;
+
+/**
+ * an optimization pass that removes statements which can never run
+ * and blocks which don't need a scope of their own
+ *
+ * e.g.     if (false) { ... }              is removed
+ *          if (true) A; else B;            becomes     A;
+ *          while (false) { ... }           is removed
+ *          for (A; false; B) { ... }       becomes     A;
+ *          return a; print b;              becomes     return a;
+ *          { }                             is removed
+ *          { print a; { print b; } }       becomes     print a; print b;
+ *
+ * a block that declares no variable directly doesn't need an Environment,
+ * if it can't be spliced into its parent (e.g. it's a loop body),
+ * it is kept as a block that is NOT scoped (see Stmt.BlockStmt.scoped)
+ *
+ * it should run after the ConstantFolder, which turns conditions into literals,
+ * and before the Resolver
+ */
+class DeadCodeEliminator implements Stmt.Visitor<Stmt> {
+
+    private int nodesBefore = 0;
+    private int nodesAfter = 0;
+
+    List<Stmt> eliminate(List<Stmt> statements) {
+        NodeCounter counter = new NodeCounter();
+        nodesBefore = counter.count(statements);
+
+        List<Stmt> result = eliminateAll(statements);
+
+        nodesAfter = counter.count(result);
+        return result;
+    }
+
+    int nodesBefore() {
+        return nodesBefore;
+    }
+
+    int nodesAfter() {
+        return nodesAfter;
+    }
+
+    /**
+     * @return the statement without dead code, or null if nothing is left
+     */
+    private Stmt eliminate(Stmt stmt) {
+        if (stmt == null) return null;
+        return stmt.accept(this);
+    }
+
+    /**
+     * eliminate dead code in a list of statements,
+     * removing the empty ones and splicing in the blocks that need no scope
+     */
+    private List<Stmt> eliminateAll(List<Stmt> statements) {
+        List<Stmt> result = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            Stmt live = eliminate(statement);
+            if (live == null) continue;
+            if (live instanceof Stmt.BlockStmt && !((Stmt.BlockStmt) live).scoped) {
+                result.addAll(((Stmt.BlockStmt) live).declarations);
+            }
+            else {
+                result.add(live);
+            }
+            // nothing after a `return` runs
+            if (!result.isEmpty() && result.get(result.size() - 1) instanceof Stmt.ReturnStmt) break;
+        }
+        return result;
+    }
+
+    /**
+     * a `fun` declares a variable too
+     */
+    private static boolean declaresVariable(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.DeclarationStmt || statement instanceof Stmt.FunctionStmt) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.ExpressionStmt stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.PrintStmt stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitDeclarationStmt(Stmt.DeclarationStmt stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.BlockStmt stmt) {
+        List<Stmt> statements = eliminateAll(stmt.declarations);
+        if (statements.isEmpty()) return null;
+        return new Stmt.BlockStmt(stmt.brace, statements, declaresVariable(statements));
+    }
+
+    /**
+     * with a literal condition, only the branch taken is kept,
+     * otherwise the condition is kept for its side effects (and errors)
+     * even if both branches turn out to be empty
+     */
+    @Override
+    public Stmt visitIfStmt(Stmt.IfStmt stmt) {
+        if (stmt.condition instanceof Expr.LiteralExpr) {
+            boolean cond = isTruthy(((Expr.LiteralExpr) stmt.condition).value);
+            return eliminate(cond ? stmt.thenBranch : stmt.elseBranch);
+        }
+
+        Stmt thenBranch = eliminate(stmt.thenBranch);
+        Stmt elseBranch = eliminate(stmt.elseBranch);
+        if (thenBranch == null && elseBranch == null) {
+            return new Stmt.ExpressionStmt(stmt.condition);
+        }
+        return new Stmt.IfStmt(stmt.condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.WhileStmt stmt) {
+        if (stmt.condition instanceof Expr.LiteralExpr
+                && !isTruthy(((Expr.LiteralExpr) stmt.condition).value)) {
+            return null;
+        }
+        return new Stmt.WhileStmt(stmt.keyword, stmt.condition, eliminate(stmt.loopBody));
+    }
+
+    /**
+     * with a false condition, only the initializer is left,
+     * in a block of its own if it declares the loop variable
+     */
+    @Override
+    public Stmt visitForStmt(Stmt.ForStmt stmt) {
+        if (stmt.condition instanceof Expr.LiteralExpr
+                && !isTruthy(((Expr.LiteralExpr) stmt.condition).value)) {
+            if (!stmt.scoped) return stmt.initializer;
+            return new Stmt.BlockStmt(stmt.keyword, List.of(stmt.initializer));
+        }
+        return new Stmt.ForStmt(stmt.keyword, stmt.initializer, stmt.condition, stmt.increment, eliminate(stmt.loopBody));
+    }
+
+    /**
+     * the body is a list of statements run in the scope of the call,
+     * so its blocks needing no scope are spliced into it like in a block
+     */
+    @Override
+    public Stmt visitFunctionStmt(Stmt.FunctionStmt stmt) {
+        return new Stmt.FunctionStmt(stmt.name, stmt.params, eliminateAll(stmt.body));
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.ReturnStmt stmt) {
+        return stmt;
+    }
+}
@@ -1,7 +1,6 @@
 package com.coiggahou.lox;
 
-import com.coiggahou.lox.error.RuntimeError;
-
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,14 +8,38 @@ public class Environment {
 
     private final Environment enclosing;
 
-    private final Map<String, Object> values = new HashMap<>();
+    /**
+     * variables looked up by name,
+     * null if this is an array-backed scope
+     */
+    private final Map<String, Object> values;
 
-    public Environment() {
-        this.enclosing = null;
-    }
+    /**
+     * variables looked up by the slot index given by the Resolver,
+     * null if this is a name-backed scope
+     */
+    private final Object[] slots;
+
+    /**
+     * the doubles of the slots holding Unboxed.NUMBER,
+     * allocated when the first number is stored
+     */
+    private double[] numbers;
 
     public Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        this.values = new HashMap<>();
+        this.slots = null;
+    }
+
+    /**
+     * create an array-backed scope for a resolved block
+     * @param slotCount number of variables declared in the block
+     */
+    public Environment(Environment enclosing, int slotCount) {
+        this.enclosing = enclosing;
+        this.values = null;
+        this.slots = new Object[slotCount];
     }
 
     /**
@@ -32,34 +55,97 @@ public class Environment {
     }
 
     /**
-     * get the value by a variable name
-     * @throws RuntimeError if all scopes on the scope chain have no definition of the variable
+     * the innermost scope on the scope chain defining the name,
+     * null if none does (then it can only be a global)
+     *
+     * only name-backed scopes are searched,
+     * an array-backed scope never holds a variable by name
+     */
+    Environment definingScope(String name) {
+        Environment scope = this;
+        while (scope != null) {
+            if (scope.values != null && scope.values.containsKey(name)) return scope;
+            scope = scope.enclosing;
+        }
+        return null;
+    }
+
+    /**
+     * get the value of a variable defined by name in this scope
+     * (see definingScope())
+     */
+    Object get(String name) {
+        return values.get(name);
+    }
+
+    /**
+     * assign a variable defined by name in this scope
+     */
+    void assign(String name, Object value) {
+        values.put(name, value);
+    }
+
+    /**
+     * get the value of a resolved variable in this (array-backed) scope
+     * @return the value, or Unboxed.NUMBER if it's a number (see getNumber())
+     */
+    Object get(int slot) {
+        return slots[slot];
+    }
+
+    /**
+     * get the number of a slot for which get() gave Unboxed.NUMBER
+     */
+    double getNumber(int slot) {
+        return numbers[slot];
+    }
+
+    /**
+     * define or assign a resolved variable in this (array-backed) scope
+     * (numbers should go to setNumber() so they stay unboxed)
+     */
+    void set(int slot, Object value) {
+        slots[slot] = value;
+    }
+
+    void setNumber(int slot, double value) {
+        if (numbers == null) {
+            numbers = new double[slots.length];
+        }
+        slots[slot] = Unboxed.NUMBER;
+        numbers[slot] = value;
+    }
+
+    /**
+     * forget the values of an array-backed scope, for it to be reused
+     */
+    void clear() {
+        Arrays.fill(slots, null);
+    }
+
+    /**
+     * how many scopes definingScope() walks up to find the name
+     * (up to the outermost one if it's not defined at all)
      */
-    Object get(Token name) {
-        // first try to find definition in the local scope
-        // if no def in local scope, go up by the scope chain
-        if (!values.containsKey(name.lexeme)) {
-            if (enclosing != null) {
-                return enclosing.get(name);
-            }
-            throw new RuntimeError(name, String.format("Undefined variable %s.", name.lexeme));
+    int distanceTo(Token name) {
+        int distance = 0;
+        Environment scope = this;
+        while ((scope.values == null || !scope.values.containsKey(name.lexeme)) && scope.enclosing != null) {
+            scope = scope.enclosing;
+            distance++;
         }
-        return values.get(name.lexeme);
+        return distance;
     }
 
     /**
-     * assign the specified variable
-     * @return the assigned value
-     * @throws RuntimeError if all scopes on the scope chain have no definition of the variable
+     * the scope which is `depth` levels above this one,
+     * a resolved variable lives in ancestor(depth).get(slot)
      */
-    Object assign(Token name, Object value) {
-        if (!values.containsKey(name.lexeme)) {
-            if (enclosing != null) {
-                return enclosing.assign(name, value);
-            }
-            throw new RuntimeError(name, String.format("Cannot assigned an undefined variable %s.", name.lexeme));
+    Environment ancestor(int depth) {
+        Environment scope = this;
+        for (int i = 0; i < depth; i++) {
+            scope = scope.enclosing;
         }
-        values.put(name.lexeme, value);
-        return value;
+        return scope;
     }
 }
@@ -0,0 +1,88 @@
+package com.coiggahou.lox;
+
+import java.time.Duration;
+
+/**
+ * how far a run of a Program may go before it is stopped
+ * with an ExecutionLimitError, for running scripts which are not trusted
+ *
+ *      LoxEngine engine = new LoxEngine().withLimits(ExecutionLimits.NONE
+ *              .withMaxSteps(10_000_000)
+ *              .withTimeout(Duration.ofSeconds(2)));
+ *
+ *    steps:         loop iterations and calls, in all
+ *    timeout:       wall-clock time of the run
+ *    environments:  environments (of blocks, loops and calls) and functions made over the run,
+ *                   which is what bounds the memory of a run, as a function keeps its closure alive
+ *    scopes:        scopes alive at the same time (nested blocks and calls), a bound on the depth
+ *                   of the run, not on its memory
+ *    string length: chars of the longest string `+` may build
+ *
+ * the timeout (and cancelling, see Session.cancel()) is only looked at
+ * every so many steps, so a run may go on a little after its deadline
+ *
+ * the VM only has steps, the timeout and string length to look at:
+ * its locals live on a stack of a size known when compiling (Chunk.maxStack),
+ * and it makes no environments and has no functions (programs with functions
+ * are run on the Interpreter), so `environments` and `scopes` never apply to it
+ *
+ * NOTE:
+ *  ExecutionLimits are immutable, every with...() gives new ones
+ */
+public final class ExecutionLimits {
+
+    public static final ExecutionLimits NONE =
+            new ExecutionLimits(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    final long maxSteps;
+
+    /**
+     * Long.MAX_VALUE for no timeout
+     */
+    final long timeoutNanos;
+
+    final long maxEnvironments;
+    final int maxScopes;
+    final int maxStringLength;
+
+    private ExecutionLimits(long maxSteps, long timeoutNanos, long maxEnvironments, int maxScopes, int maxStringLength) {
+        this.maxSteps = maxSteps;
+        this.timeoutNanos = timeoutNanos;
+        this.maxEnvironments = maxEnvironments;
+        this.maxScopes = maxScopes;
+        this.maxStringLength = maxStringLength;
+    }
+
+    public ExecutionLimits withMaxSteps(long maxSteps) {
+        if (maxSteps < 0) throw new IllegalArgumentException("maxSteps < 0");
+        return new ExecutionLimits(maxSteps, timeoutNanos, maxEnvironments, maxScopes, maxStringLength);
+    }
+
+    /**
+     * @param timeout null for no timeout
+     */
+    public ExecutionLimits withTimeout(Duration timeout) {
+        long nanos = Long.MAX_VALUE;
+        if (timeout != null) {
+            if (timeout.isNegative()) throw new IllegalArgumentException("negative timeout");
+            // Duration.toNanos() throws beyond ~292 years
+            nanos = timeout.compareTo(Duration.ofNanos(Long.MAX_VALUE)) >= 0 ? Long.MAX_VALUE : timeout.toNanos();
+        }
+        return new ExecutionLimits(maxSteps, nanos, maxEnvironments, maxScopes, maxStringLength);
+    }
+
+    public ExecutionLimits withMaxEnvironments(long maxEnvironments) {
+        if (maxEnvironments < 0) throw new IllegalArgumentException("maxEnvironments < 0");
+        return new ExecutionLimits(maxSteps, timeoutNanos, maxEnvironments, maxScopes, maxStringLength);
+    }
+
+    public ExecutionLimits withMaxScopes(int maxScopes) {
+        if (maxScopes < 0) throw new IllegalArgumentException("maxScopes < 0");
+        return new ExecutionLimits(maxSteps, timeoutNanos, maxEnvironments, maxScopes, maxStringLength);
+    }
+
+    public ExecutionLimits withMaxStringLength(int maxStringLength) {
+        if (maxStringLength < 0) throw new IllegalArgumentException("maxStringLength < 0");
+        return new ExecutionLimits(maxSteps, timeoutNanos, maxEnvironments, maxScopes, maxStringLength);
+    }
+}
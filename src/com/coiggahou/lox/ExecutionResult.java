@@ -0,0 +1,73 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.ExecutionLimitError;
+import com.coiggahou.lox.error.ScriptError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * what happened to one execution of a Program
+ */
+public final class ExecutionResult {
+
+    /**
+     * the compile errors of the program, if it was not run at all,
+     * or the runtime error which stopped it
+     */
+    private final List<ScriptError> errors;
+
+    /**
+     * the limit the run went over, null if it did not
+     */
+    private final ExecutionLimitError.Limit limitExceeded;
+
+    ExecutionResult(List<ScriptError> errors, ExecutionLimitError.Limit limitExceeded) {
+        this.errors = errors;
+        this.limitExceeded = limitExceeded;
+    }
+
+    static ExecutionResult of(Program program, ScriptError runtimeError) {
+        return of(program, runtimeError, null);
+    }
+
+    static ExecutionResult of(Program program, ScriptError runtimeError, ExecutionLimitError.Limit limitExceeded) {
+        if (runtimeError == null) return new ExecutionResult(program.errors(), null);
+        List<ScriptError> errors = new ArrayList<>(program.errors());
+        errors.add(runtimeError);
+        return new ExecutionResult(List.copyOf(errors), limitExceeded);
+    }
+
+    public boolean succeeded() {
+        return errors.isEmpty();
+    }
+
+    public boolean hadCompileError() {
+        return !errors.isEmpty() && !errors.get(0).isRuntime();
+    }
+
+    public boolean hadRuntimeError() {
+        return !errors.isEmpty() && errors.get(errors.size() - 1).isRuntime();
+    }
+
+    /**
+     * the limit which stopped the run (see ExecutionLimits), null if none did
+     */
+    public ExecutionLimitError.Limit limitExceeded() {
+        return limitExceeded;
+    }
+
+    public List<ScriptError> errors() {
+        return errors;
+    }
+
+    /**
+     * the exit code of jlox for this result:
+     * 65 for a compile error, 70 for a runtime error (see sysexits.h)
+     */
+    public int exitCode() {
+        if (hadCompileError()) return 65;
+        if (hadRuntimeError()) return 70;
+        return 0;
+    }
+}
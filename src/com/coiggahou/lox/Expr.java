@@ -1,4 +1,7 @@
 package com.coiggahou.lox;
+
+import java.util.List;
+
 abstract class Expr {
 
     /**
@@ -23,12 +26,19 @@ abstract class Expr {
         R visitVarExpr(VarExpr expr);
         R visitAssignExpr(AssignExpr expr);
         R visitLogicExpr(LogicExpr expr);
+        R visitCallExpr(CallExpr expr);
     }
 
     static class BinaryExpr extends Expr {
         final Expr left;
         final Token operator;
         final Expr right;
+
+        /**
+         * set by the Interpreter after the first run, null until then
+         */
+        Specialization<BinaryExpr> specialization;
+
         BinaryExpr(Expr left, Token operator, Expr right) {
             this.left = left;
             this.operator = operator;
@@ -86,6 +96,24 @@ abstract class Expr {
      */
     static class VarExpr extends Expr {
         final Token identifier;
+
+        /**
+         * lexical coordinates filled in by the Resolver
+         * depth == -1 means a global (or not resolved at all)
+         */
+        int depth = -1;
+        int slot = -1;
+
+        /**
+         * set by the Resolver when the name is bound to no block scope
+         */
+        boolean global = false;
+
+        /**
+         * the Cell of the global, cached by the Interpreter the first time
+         */
+        Globals.Cell cell;
+
         VarExpr(Token identifier) {
             this.identifier = identifier;
         }
@@ -100,6 +128,19 @@ abstract class Expr {
         final Token assignee;
         final Expr assigner;
 
+        /**
+         * same as the ones in VarExpr
+         */
+        int depth = -1;
+        int slot = -1;
+        boolean global = false;
+        Globals.Cell cell;
+
+        /**
+         * same as the one in BinaryExpr
+         */
+        Specialization<AssignExpr> specialization;
+
         AssignExpr(Token assignee, Expr assigner) {
             this.assignee = assignee;
             this.assigner = assigner;
@@ -128,4 +169,29 @@ abstract class Expr {
         }
     }
 
+    /**
+     * `callee(arguments...)`
+     */
+    static class CallExpr extends Expr {
+        final Expr callee;
+
+        /**
+         * the closing parenthesis, for the line of errors of the call
+         */
+        final Token paren;
+
+        final List<Expr> arguments;
+
+        CallExpr(Expr callee, Token paren, List<Expr> arguments) {
+            this.callee = callee;
+            this.paren = paren;
+            this.arguments = arguments;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitCallExpr(this);
+        }
+    }
+
 }
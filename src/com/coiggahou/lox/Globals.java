@@ -0,0 +1,88 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.RuntimeError;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * the global variables of one Interpreter
+ *
+ * every global name has a Cell holding its value,
+ * created on the first definition or reference and never removed,
+ * so a reference to a global only has to find its Cell once:
+ * the Interpreter caches the Cell in the VarExpr or AssignExpr (an inline cache),
+ * and after that reads and writes it directly instead of hashing the name
+ *
+ * a Cell knows the Globals it belongs to, so a cached Cell is checked with
+ * `cell.owner == globals`, and a tree run by several Interpreters
+ * (e.g. a Program from the ProgramCache) just finds the Cell again
+ * when it meets the Cell of another Interpreter
+ *
+ * NOTE:
+ *  redefining a global is allowed, as it always was,
+ *  it simply writes the Cell again
+ */
+final class Globals {
+
+    /**
+     * the value of a Cell which is referenced but not defined (yet)
+     */
+    static final Object UNDEFINED = new Object();
+
+    private final Map<String, Cell> cells = new HashMap<>();
+
+    static final class Cell {
+        final Globals owner;
+        final String name;
+
+        /**
+         * the value, Unboxed.NUMBER with the double in `number`,
+         * or UNDEFINED
+         */
+        Object value = UNDEFINED;
+        double number;
+
+        private Cell(Globals owner, String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+    }
+
+    /**
+     * the Cell of a name, created undefined if there is none yet
+     */
+    Cell cell(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null) {
+            cell = new Cell(this, name);
+            cells.put(name, cell);
+        }
+        return cell;
+    }
+
+    void define(String name, Object value) {
+        cell(name).value = value;
+    }
+
+    /**
+     * @return the value of the cell, Unboxed.NUMBER if it's a number (see Cell.number)
+     * @throws RuntimeError if the variable is not defined
+     */
+    static Object get(Cell cell, Token name) {
+        Object value = cell.value;
+        if (value == UNDEFINED) {
+            throw new RuntimeError(name, String.format("Undefined variable %s.", name.lexeme));
+        }
+        return value;
+    }
+
+    /**
+     * @throws RuntimeError if the variable is not defined
+     */
+    static void checkAssignable(Cell cell, Token name) {
+        if (cell.value == UNDEFINED) {
+            throw new RuntimeError(name, String.format("Cannot assigned an undefined variable %s.", name.lexeme));
+        }
+    }
+}
@@ -1,18 +1,158 @@
 package com.coiggahou.lox;
 
 import com.coiggahou.lox.error.RuntimeError;
+import com.coiggahou.lox.output.AppendableOutputSink;
+import com.coiggahou.lox.output.DoubleFormatter;
+import com.coiggahou.lox.output.OutputSink;
 
 import java.util.List;
 
 import static com.coiggahou.lox.TokenType.OR;
+import static com.coiggahou.lox.Unboxed.NUMBER;
 
 public class Interpreter implements Expr.Visitor<Object>,
                                     Stmt.Visitor<Void>{
 
     /**
-     * points to the current innermost lexical scope
+     * points to the current innermost lexical scope,
+     * null at the top level, where there are only the globals
      */
-    private Environment environment = new Environment();
+    private Environment environment = null;
+
+    private final Globals globals = new Globals();
+
+    /**
+     * where `print` writes to
+     */
+    private final OutputSink output;
+
+    /**
+     * the profiler told about every statement run, null when not profiling,
+     * and about every expression evaluated, null unless instrumenting
+     */
+    private final Profiler statementProfiler;
+    private final Profiler expressionProfiler;
+
+    /**
+     * null unless metrics are on
+     */
+    private final Metrics metrics;
+
+    /**
+     * run BinaryExprs and AssignExprs by their Specialization,
+     * not when profiling or counting, for which every node has to be run the generic way
+     */
+    private boolean specializing;
+
+    /**
+     * charged at every loop back-edge and call, as the VM does (it has no calls),
+     * so a limit means the same on both, the Session gives every run its own
+     */
+    private Budget budget = Budget.unlimited();
+
+    /**
+     * an Interpreter printing to System.out
+     */
+    public Interpreter() {
+        this(new AppendableOutputSink(System.out));
+    }
+
+    public Interpreter(OutputSink output) {
+        this(output, null);
+    }
+
+    public Interpreter(OutputSink output, Profiler profiler) {
+        this(output, profiler, null);
+    }
+
+    public Interpreter(OutputSink output, Profiler profiler, Metrics metrics) {
+        this.output = output;
+        this.metrics = metrics;
+        this.statementProfiler = profiler;
+        this.expressionProfiler = profiler != null && !profiler.isSampling() ? profiler : null;
+        this.specializing = expressionProfiler == null && metrics == null;
+        globals.define(NativeFunction.CLOCK.name, NativeFunction.CLOCK);
+    }
+
+    /**
+     * always run the generic way, ignoring the Specializations of the nodes,
+     * to compare with
+     */
+    Interpreter withoutSpecialization() {
+        specializing = false;
+        return this;
+    }
+
+    /**
+     * run the next programs within the budget
+     */
+    void limitTo(Budget budget) {
+        this.budget = budget;
+    }
+
+
+    /**
+     * the number given by the latest evaluate() which returned Unboxed.NUMBER
+     *
+     * NOTE:
+     *  it is overwritten by the next evaluation,
+     *  so read it right after evaluate() (see numberOf())
+     */
+    private double number;
+
+    /**
+     * set by a `return` statement, with the value in `returnValue`
+     * (and `returnNumber` if it is Unboxed.NUMBER)
+     *
+     * every loop over statements stops when it sees the flag,
+     * until the call being returned from clears it,
+     * so a return costs no exception
+     */
+    private boolean returning;
+    private Object returnValue;
+    private double returnNumber;
+
+    /**
+     * leave the result in `number` instead of boxing it
+     * @return Unboxed.NUMBER
+     */
+    Object number(double value) {
+        number = value;
+        return NUMBER;
+    }
+
+    /**
+     * the double of a value given by evaluate(),
+     * 0 if it is not a number at all (callers check isNumber() first)
+     */
+    double numberOf(Object value) {
+        if (value == NUMBER) return number;
+        if (value instanceof Double) return (double) value;
+        return 0;
+    }
+
+    /**
+     * box the value if it is Unboxed.NUMBER,
+     * for values going to places that only hold objects (e.g. the global scope)
+     */
+    private Object box(Object value) {
+        if (value == NUMBER) {
+            if (metrics != null) metrics.boxedNumbers++;
+            return number;
+        }
+        return value;
+    }
+
+    static boolean isNumber(Object value) {
+        return value == NUMBER || value instanceof Double;
+    }
+
+    /**
+     * a String, or a LoxString made by `+`
+     */
+    static boolean isString(Object value) {
+        return value instanceof CharSequence;
+    }
 
 
     /**
@@ -22,7 +162,7 @@ public class Interpreter implements Expr.Visitor<Object>,
      * temporarily we simply assume that
      * everything is truthy except `nil` and `false`
      */
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean)object;
         return true;
@@ -32,17 +172,35 @@ public class Interpreter implements Expr.Visitor<Object>,
      * method that determines whether two objects are equal
      * __NO IMPLICIT CONVERSIONS__ during comparison
      */
-    private boolean isEqual(Object a, Object b) {
+    static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
+        if (a instanceof LoxString || b instanceof LoxString) {
+            // flatten, so a LoxString equals a String of the same chars
+            return isString(a) && isString(b) && a.toString().equals(b.toString());
+        }
         return a.equals(b);
     }
 
+    /**
+     * isEqual() for values which may be Unboxed.NUMBER,
+     * with their numbers given aside
+     *
+     * two numbers are compared the same way as Double.equals()
+     */
+    private static boolean isEqual(Object a, double an, Object b, double bn) {
+        if (isNumber(a) && isNumber(b)) {
+            return Double.doubleToLongBits(an) == Double.doubleToLongBits(bn);
+        }
+        if (isNumber(a) || isNumber(b)) return false;
+        return isEqual(a, b);
+    }
+
     /**
      * @throws RuntimeError with operator info if operand is not a number
      */
     private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Double) return;
+        if (isNumber(operand)) return;
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
@@ -51,82 +209,134 @@ public class Interpreter implements Expr.Visitor<Object>,
      *          whenever anyone of the two is not a number
      */
     private void checkNumberOperands(Token operator, Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) return;
+        if (isNumber(left) && isNumber(right)) return;
         throw new RuntimeError(operator, "Both operands must be numbers.");
     }
 
     /**
      * toString() in Lox
      */
-    private String stringify(Object object) {
+    static String stringify(Object object) {
         if (object == null) return "nil";
         if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
+            return stringify((double) object);
         }
         return object.toString();
     }
 
+    static String stringify(double number) {
+        return DoubleFormatter.toString(number);
+    }
+
+    /**
+     * stringify() for a value which may be Unboxed.NUMBER
+     */
+    private static String stringify(Object value, double number) {
+        if (value == NUMBER) return stringify(number);
+        return stringify(value);
+    }
+
+    /**
+     * a number is handed to the sink as a double, to be formatted into its buffer
+     */
+    private void print(Object value) {
+        if (isNumber(value)) {
+            output.println(numberOf(value));
+        }
+        else {
+            output.println(stringify(value));
+        }
+    }
+
+    /**
+     * run by the Specialization of the node if it has one,
+     * otherwise the generic way, choosing a Specialization by the operands
+     */
     @Override
     public Object visitBinaryExpr(Expr.BinaryExpr expr) {
+        if (specializing) {
+            Specialization<Expr.BinaryExpr> specialization = expr.specialization;
+            if (specialization != null) return specialization.execute(this, expr);
+        }
+        Object l = evaluate(expr.left);
+        double ln = numberOf(l);
+        Object r = evaluate(expr.right);
+        double rn = numberOf(r);
+        if (specializing) expr.specialization = Specialization.of(expr, l, r);
+        return binary(expr, l, ln, r, rn);
+    }
+
+    /**
+     * the generic way
+     *
+     * NOTE:
+     *  numbers of the two operands are taken out right after each evaluation,
+     *  because evaluating the right operand overwrites `number`
+     */
+    Object evaluateBinary(Expr.BinaryExpr expr) {
         Object l = evaluate(expr.left);
+        double ln = numberOf(l);
         Object r = evaluate(expr.right);
+        double rn = numberOf(r);
+        return binary(expr, l, ln, r, rn);
+    }
+
+    /**
+     * the operator applied to operands already evaluated
+     */
+    Object binary(Expr.BinaryExpr expr, Object l, double ln, Object r, double rn) {
         switch (expr.operator.type) {
             case PLUS -> {
-                if (l instanceof String && r instanceof String) {
-                    return (String)l + (String)r;
+                if (isNumber(l) && isNumber(r)) {
+                    return number(ln + rn);
                 }
                 // If one side of the `+` is String
                 // while the other side is not,
                 // automatically cast the non-String side to String
                 // then do concatenation
-                if (l instanceof String) {
-                    return (String)l + stringify(r);
-                }
-                if (r instanceof String) {
-                    return stringify(l) + (String)r;
+                if (isString(l) && isNumber(r)) {
+                    return budget.checkLength(LoxString.concat((CharSequence) l, rn), expr.operator.line);
                 }
-                if (l instanceof Double && r instanceof Double) {
-                    return (double)l + (double)r;
+                if (isString(l) || isString(r)) {
+                    LoxString string = LoxString.concat(isString(l) ? (CharSequence) l : stringify(l, ln),
+                                                        isString(r) ? (CharSequence) r : stringify(r, rn));
+                    return budget.checkLength(string, expr.operator.line);
                 }
                 throw new RuntimeError(expr.operator, "Oprands must be two numbers or two strings.");
             }
             case MINUS -> {
                 checkNumberOperands(expr.operator, l, r);
-                return (double)l - (double)r;
+                return number(ln - rn);
             }
             case STAR -> {
                 checkNumberOperands(expr.operator, l, r);
-                return (double)l * (double)r;
+                return number(ln * rn);
             }
             case SLASH -> {
                 checkNumberOperands(expr.operator, l, r);
-                return (double)l / (double)r;
+                return number(ln / rn);
             }
             case GREATER -> {
                 checkNumberOperands(expr.operator, l, r);
-                return (double)l > (double)r;
+                return ln > rn;
             }
             case GREATER_EQUAL -> {
                 checkNumberOperands(expr.operator, l, r);
-                return (double)l >= (double)r;
+                return ln >= rn;
             }
             case LESS -> {
                 checkNumberOperands(expr.operator, l, r);
-                return (double)l < (double)r;
+                return ln < rn;
             }
             case LESS_EQUAL -> {
                 checkNumberOperands(expr.operator, l, r);
-                return (double)l <= (double)r;
+                return ln <= rn;
             }
             case EQUAL_EQUAL -> {
-                return isEqual(l, r);
+                return isEqual(l, ln, r, rn);
             }
             case BANG_EQUAL -> {
-                return !isEqual(l, r);
+                return !isEqual(l, ln, r, rn);
             }
 
         }
@@ -142,7 +352,7 @@ public class Interpreter implements Expr.Visitor<Object>,
             }
             case MINUS -> {
                 checkNumberOperand(expr.operator, r);
-                return -(double)r;
+                return number(-numberOf(r));
             }
         }
         return null;
@@ -164,7 +374,45 @@ public class Interpreter implements Expr.Visitor<Object>,
      */
     @Override
     public Object visitVarExpr(Expr.VarExpr expr) {
-        return environment.get(expr.identifier);
+        if (metrics != null) metrics.scopeWalked(walkDepth(expr.depth, expr.global, expr.identifier));
+        if (expr.depth >= 0) {
+            Environment scope = environment.ancestor(expr.depth);
+            Object value = scope.get(expr.slot);
+            if (value == NUMBER) {
+                number = scope.getNumber(expr.slot);
+            }
+            return value;
+        }
+
+        Globals.Cell cell;
+        if (expr.global) {
+            cell = expr.cell;
+            if (cell == null || cell.owner != globals) {
+                cell = globals.cell(expr.identifier.lexeme);
+                expr.cell = cell;
+            }
+        }
+        else {
+            // not resolved: search the scopes by name before the globals
+            Environment scope = environment == null ? null : environment.definingScope(expr.identifier.lexeme);
+            if (scope != null) return scope.get(expr.identifier.lexeme);
+            cell = globals.cell(expr.identifier.lexeme);
+        }
+        Object value = Globals.get(cell, expr.identifier);
+        if (value == NUMBER) {
+            number = cell.number;
+        }
+        return value;
+    }
+
+    /**
+     * how many scopes a lookup walks up, for the metrics,
+     * a global found through its Cell walks none
+     */
+    private int walkDepth(int depth, boolean global, Token name) {
+        if (depth >= 0) return depth;
+        if (global || environment == null) return 0;
+        return environment.distanceTo(name);
     }
 
 
@@ -179,7 +427,68 @@ public class Interpreter implements Expr.Visitor<Object>,
      */
     @Override
     public Object visitAssignExpr(Expr.AssignExpr expr) {
-        return environment.assign(expr.assignee, evaluate(expr.assigner));
+        if (specializing) {
+            Specialization<Expr.AssignExpr> specialization = expr.specialization;
+            if (specialization != null) return specialization.execute(this, expr);
+        }
+        Object value = assign(expr);
+        if (specializing) expr.specialization = Specialization.of(expr, value);
+        return value;
+    }
+
+    /**
+     * the generic way
+     */
+    Object assign(Expr.AssignExpr expr) {
+        Object value = evaluate(expr.assigner);
+        if (metrics != null) metrics.scopeWalked(walkDepth(expr.depth, expr.global, expr.assignee));
+        if (expr.depth >= 0) {
+            Environment scope = environment.ancestor(expr.depth);
+            if (value == NUMBER) {
+                scope.setNumber(expr.slot, number);
+            }
+            else {
+                scope.set(expr.slot, value);
+            }
+            return value;
+        }
+
+        Globals.Cell cell;
+        if (expr.global) {
+            cell = expr.cell;
+            if (cell == null || cell.owner != globals) {
+                cell = globals.cell(expr.assignee.lexeme);
+                expr.cell = cell;
+            }
+        }
+        else {
+            Environment scope = environment == null ? null : environment.definingScope(expr.assignee.lexeme);
+            if (scope != null) {
+                scope.assign(expr.assignee.lexeme, box(value));
+                return value;
+            }
+            cell = globals.cell(expr.assignee.lexeme);
+        }
+        Globals.checkAssignable(cell, expr.assignee);
+        setGlobal(cell, value);
+        return value;
+    }
+
+    /**
+     * @param value may be Unboxed.NUMBER, a global keeps numbers unboxed too
+     */
+    private void setGlobal(Globals.Cell cell, Object value) {
+        if (value == NUMBER) {
+            cell.number = number;
+        }
+        cell.value = value;
+    }
+
+    /**
+     * the scope `depth` scopes up from the current one
+     */
+    Environment scope(int depth) {
+        return environment.ancestor(depth);
     }
 
     /**
@@ -202,10 +511,130 @@ public class Interpreter implements Expr.Visitor<Object>,
         return evaluate(expr.right);
     }
 
-    private Object evaluate(Expr expr) {
+    /**
+     * the callee is evaluated first, then the arguments from left to right
+     */
+    @Override
+    public Object visitCallExpr(Expr.CallExpr expr) {
+        Object callee = evaluate(expr.callee);
+        if (callee instanceof LoxFunction) {
+            return callFunction((LoxFunction) callee, expr);
+        }
+        if (!(callee instanceof LoxCallable)) {
+            throw new RuntimeError(expr.paren, "Can only call functions.");
+        }
+
+        LoxCallable callable = (LoxCallable) callee;
+        checkArity(expr.paren, callable.arity(), expr.arguments.size());
+        Object[] arguments = new Object[expr.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = box(evaluate(expr.arguments.get(i)));
+        }
+        Object result = callable.call(this, arguments);
+        return result instanceof Double ? number((double) result) : result;
+    }
+
+    private static void checkArity(Token paren, int arity, int count) {
+        if (count == arity) return;
+        throw new RuntimeError(paren, String.format("Expected %d arguments but got %d.", arity, count));
+    }
+
+    /**
+     * the arguments are evaluated right into the slots of the frame,
+     * numbers staying unboxed, so no argument array is made
+     */
+    private Object callFunction(LoxFunction function, Expr.CallExpr expr) {
+        Stmt.FunctionStmt declaration = function.declaration;
+        checkArity(expr.paren, declaration.params.size(), expr.arguments.size());
+
+        Environment frame = newFrame(function, expr.paren.line);
+        List<Expr> arguments = expr.arguments;
+        for (int i = 0; i < arguments.size(); i++) {
+            bindParameter(declaration, frame, i, evaluate(arguments.get(i)));
+        }
+        return runFunction(function, frame, expr.paren.line);
+    }
+
+    /**
+     * call a function with arguments already evaluated,
+     * see LoxFunction.call()
+     */
+    Object call(LoxFunction function, Object[] arguments) {
+        Environment frame = newFrame(function, function.declaration.name.line);
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] instanceof Double) {
+                number((double) arguments[i]);
+                bindParameter(function.declaration, frame, i, NUMBER);
+            }
+            else {
+                bindParameter(function.declaration, frame, i, arguments[i]);
+            }
+        }
+        return box(runFunction(function, frame, function.declaration.name.line));
+    }
+
+    private Environment newFrame(LoxFunction function, int line) {
+        Environment frame = function.pooledFrame();
+        if (frame == null) {
+            budget.allocate(line);
+            frame = function.newFrame();
+            if (metrics != null) metrics.environmentsCreated++;
+        }
+        return frame;
+    }
+
+    /**
+     * @param value the value of the argument, which may be Unboxed.NUMBER
+     */
+    private void bindParameter(Stmt.FunctionStmt declaration, Environment frame, int index, Object value) {
+        if (declaration.slotCount < 0) {
+            frame.define(declaration.params.get(index).lexeme, box(value));
+        }
+        else if (value == NUMBER) {
+            frame.setNumber(index, number);
+        }
+        else {
+            frame.set(index, value);
+        }
+    }
+
+    /**
+     * run the body in the frame, and take the value of the `return` if any
+     * @param line where the call is, for going over the budget
+     */
+    private Object runFunction(LoxFunction function, Environment frame, int line) {
+        budget.step(line);
+        budget.enterScope(line);
+        executeBlock(function.declaration.body, frame);
+        function.release(frame);
+
+        if (!returning) return null;
+        returning = false;
+        Object value = returnValue;
+        returnValue = null;
+        if (value == NUMBER) number = returnNumber;
+        return value;
+    }
+
+    /**
+     * @return the value of the expression,
+     *         or Unboxed.NUMBER with the result left in `number`
+     */
+    Object evaluate(Expr expr) {
+        if (expressionProfiler != null) return evaluateProfiled(expr);
         return expr.accept(this);
     }
 
+    private Object evaluateProfiled(Expr expr) {
+        expressionProfiler.enter(expr);
+        try {
+            return expr.accept(this);
+        }
+        finally {
+            expressionProfiler.exit();
+        }
+    }
+
 
     /**
      * an expression statement is sth like `1+2;`
@@ -222,7 +651,8 @@ public class Interpreter implements Expr.Visitor<Object>,
 
     @Override
     public Void visitPrintStmt(Stmt.PrintStmt stmt) {
-        System.out.println(stringify(evaluate(stmt.expr)));
+        Object value = evaluate(stmt.expr);
+        print(value);
         return null;
     }
 
@@ -239,13 +669,42 @@ public class Interpreter implements Expr.Visitor<Object>,
         if (stmt.initializer != null) {
             initializeValue = evaluate(stmt.initializer);
         }
-        environment.define(varName, initializeValue);
+        if (stmt.slot >= 0) {
+            if (initializeValue == NUMBER) {
+                environment.setNumber(stmt.slot, number);
+            }
+            else {
+                environment.set(stmt.slot, initializeValue);
+            }
+        }
+        else if (environment == null) {
+            setGlobal(globals.cell(varName), initializeValue);
+        }
+        else {
+            // a block which is not resolved
+            environment.define(varName, box(initializeValue));
+        }
         return null;
     }
 
     @Override
     public Void visitBlockStmt(Stmt.BlockStmt stmt) {
-        Environment newBlockScope = new Environment(this.environment);
+        // a block without a scope of its own runs right in the current one
+        if (!stmt.scoped) {
+            for (Stmt statement : stmt.declarations) {
+                execute(statement);
+                if (returning) break;
+            }
+            return null;
+        }
+
+        // a block bound by the Resolver gets an array-backed scope
+        Environment newBlockScope = stmt.slotCount >= 0
+                ? new Environment(this.environment, stmt.slotCount)
+                : new Environment(this.environment);
+        if (metrics != null) metrics.environmentsCreated++;
+        budget.allocate(stmt);
+        budget.enterScope(stmt);
         executeBlock(stmt.declarations, newBlockScope);
         return null;
     }
@@ -266,18 +725,112 @@ public class Interpreter implements Expr.Visitor<Object>,
     public Void visitWhileStmt(Stmt.WhileStmt stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
             execute(stmt.loopBody);
+            if (returning) break;
+            budget.step(stmt);
+        }
+        return null;
+    }
+
+    /**
+     * the scope of the loop variable is created once for the whole loop,
+     * and the condition and the increment are evaluated right in it,
+     * so going around the loop costs no more than a `while`
+     */
+    @Override
+    public Void visitForStmt(Stmt.ForStmt stmt) {
+        if (!stmt.scoped) {
+            execute(stmt.initializer);
+            runLoop(stmt);
+            return null;
+        }
+
+        Environment loopScope = stmt.slotCount >= 0
+                ? new Environment(this.environment, stmt.slotCount)
+                : new Environment(this.environment);
+        if (metrics != null) metrics.environmentsCreated++;
+        budget.allocate(stmt);
+        budget.enterScope(stmt);
+        Environment previous = this.environment;
+        try {
+            this.environment = loopScope;
+            execute(stmt.initializer);
+            runLoop(stmt);
+        }
+        finally {
+            this.environment = previous;
+            budget.exitScope();
         }
         return null;
     }
 
+    private void runLoop(Stmt.ForStmt stmt) {
+        while (stmt.condition == null || isTruthy(evaluate(stmt.condition))) {
+            execute(stmt.loopBody);
+            if (returning) break;
+            if (stmt.increment != null) evaluate(stmt.increment);
+            budget.step(stmt);
+        }
+    }
+
 
     private void execute(Stmt statement) {
         if (statement == null) return;
+        if (metrics != null) metrics.statementsExecuted++;
+        if (statementProfiler != null) {
+            executeProfiled(statement);
+            return;
+        }
         statement.accept(this);
     }
 
+    private void executeProfiled(Stmt statement) {
+        statementProfiler.enter(statement);
+        try {
+            statement.accept(this);
+        }
+        finally {
+            statementProfiler.exit();
+        }
+    }
+
+    /**
+     * a function captures the scope it is declared in, as its closure
+     */
+    @Override
+    public Void visitFunctionStmt(Stmt.FunctionStmt stmt) {
+        budget.allocate(stmt);
+        LoxFunction function = new LoxFunction(stmt, environment);
+        if (stmt.slot >= 0) {
+            environment.set(stmt.slot, function);
+        }
+        else if (environment == null) {
+            globals.define(stmt.name.lexeme, function);
+        }
+        else {
+            environment.define(stmt.name.lexeme, function);
+        }
+        return null;
+    }
+
+    /**
+     * leave the value aside and raise the `returning` flag,
+     * the statements being run stop one after another up to the call
+     */
+    @Override
+    public Void visitReturnStmt(Stmt.ReturnStmt stmt) {
+        Object value = null;
+        if (stmt.value != null) {
+            value = evaluate(stmt.value);
+            if (value == NUMBER) returnNumber = number;
+        }
+        returnValue = value;
+        returning = true;
+        return null;
+    }
+
     /**
-     * execute a block in the given scope
+     * execute a block in the given scope,
+     * which must have been entered in the budget (it is exited here)
      */
     private void executeBlock(List<Stmt> statements, Environment scope) {
         Environment previous = this.environment;
@@ -291,37 +844,33 @@ public class Interpreter implements Expr.Visitor<Object>,
             this.environment = scope;
             for (Stmt statement: statements) {
                 execute(statement);
+                if (returning) break;
             }
         }
         finally {
             // After all the statements inside the block were executed,
             // replace the env pointer to the previous enclosing scope
             this.environment = previous;
+            budget.exitScope();
         }
     }
 
 
     /**
      * evaluate the expression and print the value
+     * @throws RuntimeError for the caller to report
      */
     void interpret(Expr expression) {
-        try {
-            Object value = evaluate(expression);
-            System.out.println(stringify(value));
-        }
-        catch (RuntimeError error) {
-            Lox.runtimeError(error);
-        }
+        Object value = evaluate(expression);
+        print(value);
     }
 
+    /**
+     * @throws RuntimeError for the caller to report
+     */
     void interpret(List<Stmt> statements) {
-        try {
-            for (Stmt statement : statements) {
-                execute(statement);
-            }
-        }
-        catch (RuntimeError error){
-            Lox.runtimeError(error);
+        for (Stmt statement : statements) {
+            execute(statement);
         }
     }
 
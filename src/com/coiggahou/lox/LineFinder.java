@@ -0,0 +1,112 @@
+package com.coiggahou.lox;
+
+/**
+ * the line of the first token found in a node, -1 if it has none,
+ * for reports about nodes which keep no line of their own (e.g. a block)
+ */
+final class LineFinder implements Expr.Visitor<Integer>,
+                                  Stmt.Visitor<Integer> {
+
+    private static final LineFinder INSTANCE = new LineFinder();
+
+    private LineFinder() {
+    }
+
+    static int line(Stmt stmt) {
+        return stmt.accept(INSTANCE);
+    }
+
+    static int line(Expr expr) {
+        return expr.accept(INSTANCE);
+    }
+
+    private int lineOf(Expr expr) {
+        return expr == null ? -1 : expr.accept(this);
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.BinaryExpr expr) {
+        return expr.operator.line;
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.UnaryExpr expr) {
+        return expr.operator.line;
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.GroupingExpr expr) {
+        return lineOf(expr.expression);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.LiteralExpr expr) {
+        return -1;
+    }
+
+    @Override
+    public Integer visitVarExpr(Expr.VarExpr expr) {
+        return expr.identifier.line;
+    }
+
+    @Override
+    public Integer visitAssignExpr(Expr.AssignExpr expr) {
+        return expr.assignee.line;
+    }
+
+    @Override
+    public Integer visitLogicExpr(Expr.LogicExpr expr) {
+        return expr.operator.line;
+    }
+
+    @Override
+    public Integer visitCallExpr(Expr.CallExpr expr) {
+        int line = lineOf(expr.callee);
+        return line > 0 ? line : expr.paren.line;
+    }
+
+    @Override
+    public Integer visitExpressionStmt(Stmt.ExpressionStmt stmt) {
+        return lineOf(stmt.expr);
+    }
+
+    @Override
+    public Integer visitPrintStmt(Stmt.PrintStmt stmt) {
+        return lineOf(stmt.expr);
+    }
+
+    @Override
+    public Integer visitDeclarationStmt(Stmt.DeclarationStmt stmt) {
+        return stmt.name.line;
+    }
+
+    @Override
+    public Integer visitBlockStmt(Stmt.BlockStmt stmt) {
+        return stmt.brace.line;
+    }
+
+    @Override
+    public Integer visitIfStmt(Stmt.IfStmt stmt) {
+        return lineOf(stmt.condition);
+    }
+
+    @Override
+    public Integer visitWhileStmt(Stmt.WhileStmt stmt) {
+        return stmt.keyword.line;
+    }
+
+    @Override
+    public Integer visitForStmt(Stmt.ForStmt stmt) {
+        return stmt.keyword.line;
+    }
+
+    @Override
+    public Integer visitFunctionStmt(Stmt.FunctionStmt stmt) {
+        return stmt.name.line;
+    }
+
+    @Override
+    public Integer visitReturnStmt(Stmt.ReturnStmt stmt) {
+        return stmt.keyword.line;
+    }
+}
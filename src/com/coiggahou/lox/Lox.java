@@ -2,34 +2,39 @@ package com.coiggahou.lox;
 
 import com.coiggahou.lox.error.ConsoleErrorReporter;
 import com.coiggahou.lox.error.ErrorReporter;
-import com.coiggahou.lox.error.RuntimeError;
+import com.coiggahou.lox.error.ScriptError;
+import com.coiggahou.lox.output.BufferedOutputSink;
+import com.coiggahou.lox.output.OutputSink;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 
+/**
+ * the command line: jlox
+ *
+ * it is just a client of LoxEngine,
+ * running a script file, a batch of them (--batch), or the REPL when no file is given
+ */
 public class Lox {
 
-    /**
-     * use this to ensure we don't try to execute code
-     * that has a known error
-     */
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
-
     /**
      * We need to separate the code that generates the errors
      * from the code that reports them
      */
     private static final ErrorReporter errorReporter = new ConsoleErrorReporter();
 
-    private static final Interpreter interpreter = new Interpreter();
-
 
     public static void main(String[] args) throws IOException {
 //        runFile("src/com/coiggahou/lox/test/print.txt");
@@ -37,27 +42,159 @@ public class Lox {
 //        runFile("src/com/coiggahou/lox/test/block.txt");
 //        runFile("src/com/coiggahou/lox/test/inner-outer.txt");
 //
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
+        LoxEngine engine = new LoxEngine();
+        boolean writeSnapshot = false;
+        boolean useVM = false;
+        Profiler profiler = null;
+        Metrics metrics = null;
+        boolean batch = false;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        ExecutionLimits limits = ExecutionLimits.NONE;
+        int argIndex = 0;
+        while (argIndex < args.length && args[argIndex].startsWith("--")) {
+            // an option with a value is matched as `--name=`
+            String option = args[argIndex];
+            String value = null;
+            int equals = option.indexOf('=');
+            if (equals >= 0) {
+                value = option.substring(equals + 1);
+                option = option.substring(0, equals + 1);
+            }
+            switch (option) {
+                case "--vm" -> useVM = true;
+                case "--no-fold" -> engine = engine.withConstantFolding(false);
+                case "--no-dce" -> engine = engine.withDeadCodeElimination(false);
+                case "--opt-stats" -> engine = engine.withOptimizationLog(System.err);
+                case "--snapshot" -> writeSnapshot = true;
+                case "--parallel-parse" -> engine = engine.withParallelParsing(ForkJoinPool.commonPool());
+                case "--profile" -> profiler = Profiler.instrumenting();
+                case "--profile-sample" -> profiler = Profiler.sampling(1, TimeUnit.MILLISECONDS);
+                case "--metrics" -> metrics = new Metrics();
+                case "--batch" -> batch = true;
+                case "--concurrency=" -> concurrency = (int) Math.min(parseCount(args[argIndex], value), 1 << 16);
+                case "--timeout=" -> limits = limits.withTimeout(Duration.ofMillis(parseCount(args[argIndex], value)));
+                case "--max-steps=" -> limits = limits.withMaxSteps(parseCount(args[argIndex], value));
+                case "--max-environments=" -> limits = limits.withMaxEnvironments(parseCount(args[argIndex], value));
+                default -> {
+                    System.out.println("Unknown option: " + args[argIndex]);
+                    System.exit(64);
+                }
+            }
+            argIndex++;
+        }
+
+        if (args.length - argIndex > 1 || (batch && args.length - argIndex != 1)) {
+            System.out.println("Usage: jlox [--vm] [--no-fold] [--no-dce] [--opt-stats] [--snapshot] [--parallel-parse]\n"
+                             + "            [--profile | --profile-sample] [--metrics]\n"
+                             + "            [--timeout=<ms>] [--max-steps=<n>] [--max-environments=<n>] [script]\n"
+                             + "       jlox --batch [--concurrency=<n>] [--timeout=<ms>] [--max-steps=<n>] [--max-environments=<n>] [--vm]\n"
+                             + "            <directory | manifest>\n"
+                             + "--vm runs scripts with functions on the Interpreter, as the VM has no functions\n"
+                             + "--batch runs scripts on virtual threads on Java 21+, on Java 17 on a pool of platform threads\n"
+                             + "        of at most 4 a processor, whatever --concurrency asks for");
             System.exit(64);
         }
-        else if (args.length == 1) {
-            runFile(args[0]);
+        if (profiler != null && (useVM || batch || args.length == argIndex)) {
+            System.out.println("Profiling is only supported for a script run on the Interpreter");
+            System.exit(64);
+        }
+        if (batch && (metrics != null || writeSnapshot)) {
+            System.out.println("--metrics and --snapshot are not supported with --batch");
+            System.exit(64);
+        }
+        engine = engine.withVM(useVM).withLimits(limits);
+
+        if (batch) {
+            runBatch(engine, Paths.get(args[argIndex]), concurrency);
+            return;
+        }
+
+        // output of the scripts is buffered,
+        // and flushed before exiting, reporting errors and prompting
+        OutputSink output = BufferedOutputSink.stdout();
+        try {
+            if (args.length - argIndex == 1) {
+                runFile(engine, output, args[argIndex], writeSnapshot, profiler, metrics);
+            }
+            else {
+                runPrompt(engine, output, metrics);
+            }
         }
-        else {
-            runPrompt();
+        finally {
+            output.flush();
         }
     }
 
     /**
-     * run code from a given file
+     * a positive number given to an option,
+     * exits with a usage error otherwise
      */
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+    private static long parseCount(String option, String value) {
+        try {
+            long count = Long.parseLong(value);
+            if (count > 0) return count;
+        }
+        catch (NumberFormatException ignored) {
+        }
+        System.out.println("Option needs a positive number: " + option);
+        System.exit(64);
+        return 0;
+    }
 
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
+    /**
+     * run the scripts of a directory or a manifest concurrently (see BatchRunner)
+     *
+     * when all are done, every script's output is printed in turn,
+     * followed by its status and its errors, then the summary of the batch,
+     * and jlox exits with the largest exit code of the scripts
+     */
+    private static void runBatch(LoxEngine engine, Path directoryOrManifest, int concurrency) throws IOException {
+        List<Path> scripts = BatchRunner.scripts(directoryOrManifest);
+        BatchRunner.Report report = new BatchRunner(engine, concurrency).run(scripts);
+
+        PrintStream out = System.out;
+        for (BatchRunner.ScriptResult result : report.results()) {
+            out.print(result.output());
+            out.printf(Locale.ROOT, "[%s] %s (%.3f ms)%n", result.exitCode() == 0 ? "ok" : "exit " + result.exitCode(),
+                       result.script(), result.nanos() / 1e6);
+            for (ScriptError error : result.errors()) {
+                out.println("    " + error);
+            }
+        }
+        report.writeSummary(out);
+        out.flush();
+        if (report.exitCode() != 0) System.exit(report.exitCode());
+    }
+
+    /**
+     * run code from a given file
+     *
+     * a valid snapshot next to the file is loaded instead of parsing it,
+     * with --snapshot, one is written if there is none yet
+     *
+     * with a profiler, the hot-spot report goes to stderr
+     * and the collapsed stacks to `<script>.collapsed` (for flame graph tools)
+     *
+     * with metrics, they are dumped as JSON to stderr at the end
+     */
+    private static void runFile(LoxEngine engine, OutputSink output, String path, boolean writeSnapshot,
+                                Profiler profiler, Metrics metrics) throws IOException {
+        Program program = engine.compileFile(Paths.get(path), writeSnapshot, metrics);
+        ExecutionResult result = engine.newSession(output, profiler, metrics).execute(program);
+
+        // System.exit() skips the finally block in main()
+        output.flush();
+        report(result.errors());
+        if (profiler != null && !result.hadCompileError()) {
+            profiler.writeReport(System.err);
+            try (Writer collapsed = Files.newBufferedWriter(Paths.get(path + ".collapsed"))) {
+                profiler.writeCollapsedStacks(collapsed);
+            }
+        }
+        if (metrics != null) {
+            System.err.print(metrics.toJson());
+        }
+        if (result.exitCode() != 0) System.exit(result.exitCode());
     }
 
     /**
@@ -68,71 +205,35 @@ public class Lox {
      *  which means it can execute statements when user enter statements
      *  but also just evaluate and print value when user enter single expression
      */
-    private static void runPrompt() throws IOException {
+    private static void runPrompt(LoxEngine engine, OutputSink output, Metrics metrics) throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
 
-        for (;;) {
-            // reset the error flag
-            hadError = false;
+        // global variables live as long as the prompt
+        Session session = engine.newSession(output, null, metrics);
 
+        for (;;) {
+            output.flush();
             System.out.print("> ");
+            System.out.flush();
             String line = reader.readLine();
 
             // if got EOF (send by Ctrl+D), exit the loop and quit the program
             if (line == null) {
+                if (metrics != null) System.err.print(metrics.toJson());
                 break;
             }
 
-            Scanner scanner = new Scanner(line);
-            List<Token> tokens = scanner.scanTokens();
-            Parser parser = new Parser(tokens);
-            Object stmtsOrExpr = parser.parseRepl();
-
-            if (hadError) return;
-
-            if (stmtsOrExpr instanceof List) {
-                interpreter.interpret((List<Stmt>) stmtsOrExpr);
-            }
-            else if (stmtsOrExpr instanceof Expr) {
-                interpreter.interpret((Expr) stmtsOrExpr);
-            }
+            // a line with errors is reported and skipped
+            ExecutionResult result = session.execute(engine.compileRepl(line));
+            output.flush();
+            report(result.errors());
         }
     }
 
-
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-
-        if (hadError) return;
-
-        interpreter.interpret(statements);
-    }
-
-    static void error(int lineNumber, String message) {
-        errorReporter.report(lineNumber, "", message);
-    }
-
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            errorReporter.report(token.line, " at end", message);
-        }
-        else {
-            errorReporter.report(token.line, " at '" + token.lexeme + "'", message);
+    private static void report(List<ScriptError> errors) {
+        for (ScriptError error : errors) {
+            error.reportTo(errorReporter);
         }
     }
-
-    static void runtimeError(RuntimeError error) {
-        errorReporter.report(error.getToken().line, "", error.getMessage());
-        hadRuntimeError = true;
-    }
-
-
-
-
-
 }
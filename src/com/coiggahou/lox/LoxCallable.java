@@ -0,0 +1,17 @@
+package com.coiggahou.lox;
+
+/**
+ * a value that can be called in Lox: a function, or a native function
+ */
+interface LoxCallable {
+
+    /**
+     * number of arguments the callable takes, checked before calling it
+     */
+    int arity();
+
+    /**
+     * @param arguments exactly arity() values, numbers boxed
+     */
+    Object call(Interpreter interpreter, Object[] arguments);
+}
@@ -0,0 +1,297 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.ErrorCollector;
+import com.coiggahou.lox.error.ScriptError;
+import com.coiggahou.lox.output.OutputSink;
+import com.coiggahou.lox.util.SourceFiles;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * the entry point for running Lox inside another program
+ *
+ *      LoxEngine engine = new LoxEngine();
+ *      Program program = engine.compile(source);
+ *      ExecutionResult result = engine.execute(program, new AppendableOutputSink(sb));
+ *
+ * an engine only holds its options and never changes,
+ * every compile() reports its errors into its own Program,
+ * and every execute() runs with its own globals and output,
+ * so one engine can be used by many threads at the same time
+ */
+public final class LoxEngine {
+
+    /**
+     * run programs on the bytecode VM instead of the tree-walking Interpreter,
+     * but for the programs with functions, which the VM doesn't have:
+     * they are run on the Interpreter, so both give the same results for every program
+     */
+    private final boolean useVM;
+
+    /**
+     * fold literal-only expressions before running
+     */
+    private final boolean constantFolding;
+
+    /**
+     * remove unreachable statements and needless scopes
+     */
+    private final boolean deadCodeElimination;
+
+    /**
+     * where the optimization passes tell what they did, null for nowhere
+     */
+    private final PrintStream optimizationLog;
+
+    /**
+     * scans and parses large scripts in parts in parallel, null to parse sequentially
+     */
+    private final ParallelParser parallelParser;
+
+    /**
+     * how far every run may go
+     */
+    private final ExecutionLimits limits;
+
+    public LoxEngine() {
+        this(false, true, true, null, null, ExecutionLimits.NONE);
+    }
+
+    private LoxEngine(boolean useVM, boolean constantFolding, boolean deadCodeElimination,
+                      PrintStream optimizationLog, ParallelParser parallelParser, ExecutionLimits limits) {
+        this.useVM = useVM;
+        this.constantFolding = constantFolding;
+        this.deadCodeElimination = deadCodeElimination;
+        this.optimizationLog = optimizationLog;
+        this.parallelParser = parallelParser;
+        this.limits = limits;
+    }
+
+    public LoxEngine withVM(boolean useVM) {
+        return new LoxEngine(useVM, constantFolding, deadCodeElimination, optimizationLog, parallelParser, limits);
+    }
+
+    public LoxEngine withConstantFolding(boolean constantFolding) {
+        return new LoxEngine(useVM, constantFolding, deadCodeElimination, optimizationLog, parallelParser, limits);
+    }
+
+    public LoxEngine withDeadCodeElimination(boolean deadCodeElimination) {
+        return new LoxEngine(useVM, constantFolding, deadCodeElimination, optimizationLog, parallelParser, limits);
+    }
+
+    public LoxEngine withOptimizationLog(PrintStream optimizationLog) {
+        return new LoxEngine(useVM, constantFolding, deadCodeElimination, optimizationLog, parallelParser, limits);
+    }
+
+    /**
+     * scan and parse large scripts in parts on the pool (see ParallelParser),
+     * null to go back to parsing sequentially
+     */
+    public LoxEngine withParallelParsing(ForkJoinPool pool) {
+        ParallelParser parser = pool != null ? new ParallelParser(pool) : null;
+        return new LoxEngine(useVM, constantFolding, deadCodeElimination, optimizationLog, parser, limits);
+    }
+
+    /**
+     * stop every run going over the limits with an ExecutionLimitError,
+     * ExecutionLimits.NONE by default
+     */
+    public LoxEngine withLimits(ExecutionLimits limits) {
+        return new LoxEngine(useVM, constantFolding, deadCodeElimination, optimizationLog, parallelParser, limits);
+    }
+
+    /**
+     * scan, parse, optimize and resolve (or compile to bytecode) a script
+     */
+    public Program compile(CharSequence source) {
+        return compile(source, null);
+    }
+
+    /**
+     * @param metrics where to report the time spent on each phase, null for nowhere
+     */
+    public Program compile(CharSequence source, Metrics metrics) {
+        ErrorCollector errors = new ErrorCollector();
+        List<Stmt> statements = parse(source, errors, metrics);
+        if (errors.hasErrors()) return Program.failed(errors.errors());
+
+        return prepare(statements, metrics);
+    }
+
+    /**
+     * compile a script file, loading its tree from the snapshot next to it
+     * (see Snapshot) instead of parsing it, if the snapshot is valid
+     *
+     * @param writeSnapshot write a new snapshot when there is no valid one
+     */
+    public Program compileFile(Path script, boolean writeSnapshot) throws IOException {
+        return compileFile(script, writeSnapshot, null);
+    }
+
+    public Program compileFile(Path script, boolean writeSnapshot, Metrics metrics) throws IOException {
+        // the file is mapped into memory and scanned from there,
+        // instead of being copied into a byte[] and then a String
+        CharSequence source = SourceFiles.map(script, Charset.defaultCharset());
+        Path snapshot = Snapshot.pathOf(script);
+
+        long start = System.nanoTime();
+        List<Stmt> statements = Snapshot.read(snapshot, source);
+        if (statements != null) {
+            if (metrics != null) metrics.snapshotLoadNanos += System.nanoTime() - start;
+        }
+        else {
+            ErrorCollector errors = new ErrorCollector();
+            statements = parse(source, errors, metrics);
+            if (errors.hasErrors()) return Program.failed(errors.errors());
+            if (writeSnapshot) Snapshot.write(snapshot, source, statements);
+        }
+        return prepare(statements, metrics);
+    }
+
+    /**
+     * compile a line typed into the REPL,
+     * which may also be a single expression whose value is to be printed
+     */
+    public Program compileRepl(String line) {
+        ErrorCollector errors = new ErrorCollector();
+        Parser parser = new Parser(new Scanner(line, errors), errors);
+        Object stmtsOrExpr = parser.parseRepl();
+        if (errors.hasErrors()) return Program.failed(errors.errors());
+
+        if (stmtsOrExpr instanceof Expr) {
+            Expr expression = (Expr) stmtsOrExpr;
+            if (constantFolding) expression = new ConstantFolder().fold(expression);
+            return build(null, expression);
+        }
+        @SuppressWarnings("unchecked")
+        List<Stmt> statements = (List<Stmt>) stmtsOrExpr;
+        return build(optimize(statements), null);
+    }
+
+    /**
+     * a session keeps its globals between the programs it executes
+     */
+    public Session newSession(OutputSink output) {
+        return new Session(output, null, null, limits);
+    }
+
+    /**
+     * a session whose runs are watched by the profiler,
+     * only programs for the Interpreter (not the VM) can be profiled
+     */
+    public Session newSession(OutputSink output, Profiler profiler) {
+        return new Session(output, profiler, null, limits);
+    }
+
+    /**
+     * a session reporting its runs into the metrics, the profiler may be null
+     */
+    public Session newSession(OutputSink output, Profiler profiler, Metrics metrics) {
+        return new Session(output, profiler, metrics, limits);
+    }
+
+    /**
+     * execute the program with fresh globals
+     */
+    public ExecutionResult execute(Program program, OutputSink output) {
+        return newSession(output).execute(program);
+    }
+
+    public ExecutionResult execute(Program program, OutputSink output, Profiler profiler) {
+        return newSession(output, profiler).execute(program);
+    }
+
+    public ExecutionResult run(CharSequence source, OutputSink output) {
+        return execute(compile(source), output);
+    }
+
+    private List<Stmt> parse(CharSequence source, ErrorCollector errors, Metrics metrics) {
+        long start = System.nanoTime();
+        List<Stmt> statements;
+        if (parallelParser != null) {
+            statements = parallelParser.parse(source, errors);
+        }
+        else {
+            // tokens are scanned on demand while parsing
+            Scanner scanner = new Scanner(source, errors);
+            Parser parser = new Parser(scanner, errors);
+            if (metrics != null) {
+                scanner.reportTo(metrics);
+                parser.reportTo(metrics);
+            }
+            statements = parser.parse();
+        }
+        if (metrics != null) metrics.scanAndParseNanos += System.nanoTime() - start;
+        return statements;
+    }
+
+    /**
+     * optimize the parsed tree and make it a Program
+     */
+    private Program prepare(List<Stmt> statements, Metrics metrics) {
+        long start = System.nanoTime();
+        Program program = build(optimize(statements), null);
+        if (metrics != null) metrics.prepareNanos += System.nanoTime() - start;
+        return program;
+    }
+
+    /**
+     * turn the optimized tree into what the Interpreter or the VM runs
+     */
+    private Program build(List<Stmt> statements, Expr expression) {
+        if (useVM) {
+            Compiler compiler = new Compiler();
+            try {
+                Chunk chunk = statements != null
+                        ? compiler.compile(statements)
+                        : compiler.compileExpression(expression);
+                return new Program(null, null, chunk, List.of());
+            }
+            catch (Compiler.UnsupportedError error) {
+                // fall back to the Interpreter
+            }
+            catch (Compiler.CompileError error) {
+                return Program.failed(List.of(new ScriptError(error.line, "", error.getMessage(), false)));
+            }
+        }
+
+        // bind local variables to (depth, slot) before running
+        Resolver resolver = new Resolver();
+        if (statements != null) {
+            resolver.resolve(statements);
+        }
+        else {
+            resolver.resolve(expression);
+        }
+        return new Program(statements, expression, null, List.of());
+    }
+
+    /**
+     * run the enabled optimization passes over the tree
+     */
+    private List<Stmt> optimize(List<Stmt> statements) {
+        if (constantFolding) {
+            ConstantFolder folder = new ConstantFolder();
+            statements = folder.fold(statements);
+            if (optimizationLog != null) {
+                optimizationLog.println("[opt] constant folding eliminated " + folder.eliminated() + " nodes");
+            }
+        }
+        if (deadCodeElimination) {
+            DeadCodeEliminator eliminator = new DeadCodeEliminator();
+            statements = eliminator.eliminate(statements);
+            if (optimizationLog != null) {
+                int before = eliminator.nodesBefore();
+                int after = eliminator.nodesAfter();
+                optimizationLog.format("[opt] dead code elimination shrank the tree from %d to %d nodes (%.1f%% left)%n",
+                        before, after, before == 0 ? 100.0 : 100.0 * after / before);
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,84 @@
+package com.coiggahou.lox;
+
+/**
+ * a function declared in a script, with the scope it was declared in
+ *
+ * a call runs the body in a scope of its own (a frame),
+ * whose enclosing scope is the `closure`, not the scope of the caller
+ *
+ * frames are array-backed and the arguments go right into their first slots,
+ * and when nothing can keep a frame after the call
+ * (no function is declared inside the body, see Stmt.FunctionStmt.hasClosures),
+ * the frame is kept here and reused by the next call
+ * instead of allocating a new one every time
+ *
+ * NOTE:
+ *  a LoxFunction is made by the `fun` statement at runtime,
+ *  so it belongs to one Interpreter, on one thread, like its frames
+ */
+final class LoxFunction implements LoxCallable {
+
+    /**
+     * frames kept for reuse, one for every level of recursion at most
+     */
+    private static final int MAX_POOLED_FRAMES = 32;
+
+    final Stmt.FunctionStmt declaration;
+
+    final Environment closure;
+
+    /**
+     * the frames kept for reuse, null when frames can't be reused
+     */
+    private final Environment[] pool;
+
+    private int pooled = 0;
+
+    LoxFunction(Stmt.FunctionStmt declaration, Environment closure) {
+        this.declaration = declaration;
+        this.closure = closure;
+        boolean reusable = declaration.slotCount >= 0 && !declaration.hasClosures;
+        this.pool = reusable ? new Environment[MAX_POOLED_FRAMES] : null;
+    }
+
+    /**
+     * a frame left by an earlier call, null if there is none
+     */
+    Environment pooledFrame() {
+        if (pooled == 0) return null;
+        return pool[--pooled];
+    }
+
+    /**
+     * a new frame, array-backed, or name-backed if the function is not resolved
+     */
+    Environment newFrame() {
+        if (declaration.slotCount >= 0) return new Environment(closure, declaration.slotCount);
+        return new Environment(closure);
+    }
+
+    /**
+     * give the frame of a call which has returned back for reuse
+     */
+    void release(Environment frame) {
+        if (pool == null || pooled == pool.length) return;
+        // don't let a finished call keep its values alive
+        frame.clear();
+        pool[pooled++] = frame;
+    }
+
+    @Override
+    public int arity() {
+        return declaration.params.size();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        return interpreter.call(this, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + declaration.name.lexeme + ">";
+    }
+}
@@ -0,0 +1,142 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.output.DoubleFormatter;
+
+/**
+ * a string made by `+` at runtime
+ *
+ * with java String, `s = s + line;` in a loop copies the whole of `s`
+ * every time around, so building a string is quadratic
+ *
+ * a LoxString is instead the first `length` chars of a StringBuilder,
+ * and appending to it appends to the builder in place,
+ * as long as nothing has been appended to the builder after those chars yet:
+ *
+ *      var a = "x" + y;   // a: buffer[0, 2)
+ *      var b = a + "1";   // b: buffer[0, 3), appended in place
+ *      var c = a + "2";   // c: a fresh builder, as buffer[2] is taken by b
+ *
+ * every LoxString keeps seeing its own chars, as a builder is only appended to,
+ * and the common case (always appending to the latest string) is amortized O(1)
+ *
+ * a LoxString is turned into a java String (flattened) only when one is needed:
+ * when it is printed, compared with `==` or stringified,
+ * and the String is kept for the next time
+ *
+ * NOTE:
+ *  only the Interpreter and the VM make LoxStrings,
+ *  string literals in the tree (and in snapshots, chunks) stay java Strings,
+ *  so anything holding a Lox string must take both, as a CharSequence
+ */
+final class LoxString implements CharSequence {
+
+    private final StringBuilder buffer;
+
+    private final int length;
+
+    /**
+     * the chars as a java String, once flattened
+     */
+    private String flat;
+
+    private LoxString(StringBuilder buffer) {
+        this.buffer = buffer;
+        this.length = buffer.length();
+    }
+
+    /**
+     * `left + right` where both are Lox strings (String or LoxString)
+     */
+    static LoxString concat(CharSequence left, CharSequence right) {
+        if (left instanceof LoxString) {
+            return ((LoxString) left).append(right);
+        }
+        StringBuilder buffer = new StringBuilder(left.length() + right.length() + 16);
+        buffer.append(left);
+        appendTo(buffer, right);
+        return new LoxString(buffer);
+    }
+
+    /**
+     * `left + right` where right is a number,
+     * which is formatted straight into the builder
+     */
+    static LoxString concat(CharSequence left, double right) {
+        StringBuilder buffer;
+        if (left instanceof LoxString) {
+            buffer = ((LoxString) left).appendableBuffer(24);
+        }
+        else {
+            buffer = new StringBuilder(left.length() + 24 + 16);
+            buffer.append(left);
+        }
+        DoubleFormatter.append(buffer, right);
+        return new LoxString(buffer);
+    }
+
+    private LoxString append(CharSequence tail) {
+        StringBuilder target = appendableBuffer(tail.length());
+        appendTo(target, tail);
+        return new LoxString(target);
+    }
+
+    /**
+     * the builder to append to after our chars:
+     * our own, or a copy if someone appended to it already
+     */
+    private StringBuilder appendableBuffer(int extra) {
+        if (buffer.length() == length) return buffer;
+        StringBuilder copy = new StringBuilder(length + extra + 16);
+        copy.append(buffer, 0, length);
+        return copy;
+    }
+
+    private static void appendTo(StringBuilder buffer, CharSequence tail) {
+        if (tail instanceof LoxString) {
+            LoxString string = (LoxString) tail;
+            if (string.flat != null || string.buffer == buffer) {
+                // `s + s`: don't append a builder to itself
+                buffer.append(string.toString());
+            }
+            else {
+                buffer.append(string.buffer, 0, string.length);
+            }
+            return;
+        }
+        buffer.append(tail);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) throw new StringIndexOutOfBoundsException(index);
+        return buffer.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            flat = buffer.substring(0, length);
+        }
+        return flat;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof LoxString && toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
@@ -0,0 +1,123 @@
+package com.coiggahou.lox;
+
+import java.util.Locale;
+
+/**
+ * counters and timers of one run, reported into by the
+ * Scanner, the Parser, the LoxEngine and the Interpreter
+ *
+ * every component holds a Metrics which is null when metrics are off,
+ * so all it costs then is a null check
+ *
+ * NOTE:
+ *  the counters are plain fields, a Metrics belongs to one run on one thread
+ *  (with parallel parsing, the Scanners of the parts don't report into it)
+ */
+public final class Metrics {
+
+    long tokensScanned;
+    long scanNanos;
+
+    /**
+     * scanning and parsing together, as tokens are scanned while parsing
+     */
+    long scanAndParseNanos;
+
+    /**
+     * top-level statements
+     */
+    long statementsParsed;
+
+    /**
+     * when the tree comes from a snapshot instead of the Parser
+     */
+    long snapshotLoadNanos;
+
+    /**
+     * optimization passes, and resolving or compiling to bytecode
+     */
+    long prepareNanos;
+
+    long executeNanos;
+    long statementsExecuted;
+
+    /**
+     * scopes created for blocks
+     */
+    long environmentsCreated;
+
+    /**
+     * variable lookups and assignments, and the scopes walked up for them
+     */
+    long scopeWalks;
+    long scopeWalkDepthTotal;
+    long scopeWalkDepthMax;
+
+    /**
+     * numbers that had to leave the unboxed `number` register as a Double
+     */
+    long boxedNumbers;
+
+    void tokenScanned(long nanos) {
+        tokensScanned++;
+        scanNanos += nanos;
+    }
+
+    void scopeWalked(int depth) {
+        scopeWalks++;
+        scopeWalkDepthTotal += depth;
+        if (depth > scopeWalkDepthMax) scopeWalkDepthMax = depth;
+    }
+
+    public long statementsExecuted() {
+        return statementsExecuted;
+    }
+
+    public long environmentsCreated() {
+        return environmentsCreated;
+    }
+
+    public long boxedNumbers() {
+        return boxedNumbers;
+    }
+
+    public double statementsPerSecond() {
+        return executeNanos == 0 ? 0 : statementsExecuted * 1e9 / executeNanos;
+    }
+
+    public double averageScopeWalkDepth() {
+        return scopeWalks == 0 ? 0 : (double) scopeWalkDepthTotal / scopeWalks;
+    }
+
+    /**
+     * all the numbers as one JSON object, times in milliseconds
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        field(json, "tokensScanned", tokensScanned);
+        field(json, "statementsParsed", statementsParsed);
+        field(json, "statementsExecuted", statementsExecuted);
+        field(json, "statementsPerSecond", Math.round(statementsPerSecond()));
+        field(json, "environmentsCreated", environmentsCreated);
+        field(json, "scopeWalks", scopeWalks);
+        field(json, "scopeWalkDepthMax", scopeWalkDepthMax);
+        json.append(String.format(Locale.ROOT, "  \"scopeWalkDepthAverage\": %.3f,%n", averageScopeWalkDepth()));
+        field(json, "boxedNumbers", boxedNumbers);
+        json.append("  \"wallTimeMillis\": {\n");
+        millis(json, "scan", scanNanos, false);
+        millis(json, "parse", scanAndParseNanos - scanNanos, false);
+        millis(json, "snapshotLoad", snapshotLoadNanos, false);
+        millis(json, "prepare", prepareNanos, false);
+        millis(json, "execute", executeNanos, true);
+        json.append("  }\n}\n");
+        return json.toString();
+    }
+
+    private static void field(StringBuilder json, String name, long value) {
+        json.append("  \"").append(name).append("\": ").append(value).append(",\n");
+    }
+
+    private static void millis(StringBuilder json, String name, long nanos, boolean last) {
+        json.append(String.format(Locale.ROOT, "    \"%s\": %.3f%s%n", name, nanos / 1e6, last ? "" : ","));
+    }
+}
@@ -0,0 +1,42 @@
+package com.coiggahou.lox;
+
+import java.util.function.Function;
+
+/**
+ * a function written in java, available to scripts as a global
+ */
+final class NativeFunction implements LoxCallable {
+
+    /**
+     * `clock()`: seconds since the epoch, for scripts to time themselves
+     */
+    static final NativeFunction CLOCK =
+            new NativeFunction("clock", 0, arguments -> System.currentTimeMillis() / 1000.0);
+
+    final String name;
+
+    private final int arity;
+
+    private final Function<Object[], Object> body;
+
+    NativeFunction(String name, int arity, Function<Object[], Object> body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        return body.apply(arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
@@ -0,0 +1,119 @@
+package com.coiggahou.lox;
+
+import java.util.List;
+
+/**
+ * counts the nodes (statements and expressions) of a syntax tree,
+ * for the optimization passes to report how much they've shrunk the tree
+ */
+class NodeCounter implements Expr.Visitor<Integer>,
+                             Stmt.Visitor<Integer> {
+
+    int count(List<Stmt> statements) {
+        int n = 0;
+        for (Stmt statement : statements) {
+            n += count(statement);
+        }
+        return n;
+    }
+
+    int count(Stmt stmt) {
+        if (stmt == null) return 0;
+        return stmt.accept(this);
+    }
+
+    int count(Expr expr) {
+        if (expr == null) return 0;
+        return expr.accept(this);
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.BinaryExpr expr) {
+        return 1 + count(expr.left) + count(expr.right);
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.UnaryExpr expr) {
+        return 1 + count(expr.right);
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.GroupingExpr expr) {
+        return 1 + count(expr.expression);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.LiteralExpr expr) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitVarExpr(Expr.VarExpr expr) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitAssignExpr(Expr.AssignExpr expr) {
+        return 1 + count(expr.assigner);
+    }
+
+    @Override
+    public Integer visitLogicExpr(Expr.LogicExpr expr) {
+        return 1 + count(expr.left) + count(expr.right);
+    }
+
+    @Override
+    public Integer visitCallExpr(Expr.CallExpr expr) {
+        int n = 1 + count(expr.callee);
+        for (Expr argument : expr.arguments) {
+            n += count(argument);
+        }
+        return n;
+    }
+
+    @Override
+    public Integer visitExpressionStmt(Stmt.ExpressionStmt stmt) {
+        return 1 + count(stmt.expr);
+    }
+
+    @Override
+    public Integer visitPrintStmt(Stmt.PrintStmt stmt) {
+        return 1 + count(stmt.expr);
+    }
+
+    @Override
+    public Integer visitDeclarationStmt(Stmt.DeclarationStmt stmt) {
+        return 1 + count(stmt.initializer);
+    }
+
+    @Override
+    public Integer visitBlockStmt(Stmt.BlockStmt stmt) {
+        return 1 + count(stmt.declarations);
+    }
+
+    @Override
+    public Integer visitIfStmt(Stmt.IfStmt stmt) {
+        return 1 + count(stmt.condition) + count(stmt.thenBranch) + count(stmt.elseBranch);
+    }
+
+    @Override
+    public Integer visitWhileStmt(Stmt.WhileStmt stmt) {
+        return 1 + count(stmt.condition) + count(stmt.loopBody);
+    }
+
+    @Override
+    public Integer visitForStmt(Stmt.ForStmt stmt) {
+        return 1 + count(stmt.initializer) + count(stmt.condition)
+                 + count(stmt.increment) + count(stmt.loopBody);
+    }
+
+    @Override
+    public Integer visitFunctionStmt(Stmt.FunctionStmt stmt) {
+        return 1 + count(stmt.body);
+    }
+
+    @Override
+    public Integer visitReturnStmt(Stmt.ReturnStmt stmt) {
+        return 1 + count(stmt.value);
+    }
+}
@@ -0,0 +1,55 @@
+package com.coiggahou.lox;
+
+/**
+ * instruction set of the bytecode VM
+ *
+ * NOTE:
+ *  these are plain byte constants instead of an enum,
+ *  so that an instruction fits in one byte of a Chunk
+ *  and the VM can switch on it without calling ordinal()
+ *
+ * operands (if any) follow the opcode as unsigned 16-bit big-endian numbers,
+ * the comment after each opcode shows its operand and stack effect
+ */
+final class OpCode {
+
+    private OpCode() {
+    }
+
+    // Constants & literals
+    static final byte CONSTANT      = 0;   // [index]     push constants[index]
+    static final byte NIL           = 1;   //             push nil
+    static final byte TRUE          = 2;   //             push true
+    static final byte FALSE         = 3;   //             push false
+    static final byte POP           = 4;   //             pop one value
+
+    // Variables
+    static final byte GET_LOCAL     = 5;   // [slot]      push stack[slot]
+    static final byte SET_LOCAL     = 6;   // [slot]      stack[slot] = top, top is NOT popped
+    static final byte DEFINE_GLOBAL = 7;   // [name]      globals[name] = pop
+    static final byte GET_GLOBAL    = 8;   // [name]      push globals[name]
+    static final byte SET_GLOBAL    = 9;   // [name]      globals[name] = top, top is NOT popped
+
+    // Binary operators: pop b, pop a, push (a op b)
+    static final byte EQUAL         = 10;
+    static final byte NOT_EQUAL     = 11;
+    static final byte GREATER       = 12;
+    static final byte GREATER_EQUAL = 13;
+    static final byte LESS          = 14;
+    static final byte LESS_EQUAL    = 15;
+    static final byte ADD           = 16;
+    static final byte SUBTRACT      = 17;
+    static final byte MULTIPLY      = 18;
+    static final byte DIVIDE        = 19;
+
+    // Unary operators: pop a, push (op a)
+    static final byte NOT           = 20;
+    static final byte NEGATE        = 21;
+
+    // Statements & control flow
+    static final byte PRINT         = 22;  //             print pop
+    static final byte JUMP          = 23;  // [offset]    ip += offset
+    static final byte JUMP_IF_FALSE = 24;  // [offset]    if top is falsey, ip += offset (top is NOT popped)
+    static final byte LOOP          = 25;  // [offset]    ip -= offset
+    static final byte RETURN        = 26;  //             end of the chunk
+}
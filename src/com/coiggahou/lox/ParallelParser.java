@@ -0,0 +1,188 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.ErrorCollector;
+import com.coiggahou.lox.error.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.coiggahou.lox.util.CharUtil.isAlnumOrUnderline;
+
+/**
+ * scans and parses a large source in parts on a ForkJoinPool
+ *
+ * the source is split at top-level statement boundaries:
+ * right after a `;` or a `}` which is outside any string, comment,
+ * braces or parentheses, and which is not followed by an `else`
+ * (that `else` would still belong to the `if` before the boundary)
+ *
+ * at such a boundary the sequential Parser would be starting a new declaration,
+ * and it never looks further than the next token,
+ * so parsing the parts on their own and putting the statements together in order
+ * gives the same tree as parsing the whole source at once
+ *
+ * every part is scanned with the line number it starts at,
+ * and errors are collected for each part,
+ * if any part has an error, the whole source is parsed again sequentially,
+ * so errors are reported exactly the same as without splitting
+ */
+class ParallelParser {
+
+    /**
+     * sources shorter than this are not worth splitting
+     */
+    private static final int MIN_PART_LENGTH = 64 * 1024;
+
+    /**
+     * parts for each thread, a few of them to even out the load
+     */
+    private static final int PARTS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+
+    ParallelParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    List<Stmt> parse(CharSequence source, ErrorReporter reporter) {
+        int parts = Math.min(pool.getParallelism() * PARTS_PER_THREAD, source.length() / MIN_PART_LENGTH);
+        if (parts < 2) return parseSequentially(source, reporter);
+
+        int[] boundaries = split(source, parts);
+        int count = boundaries.length / 2 - 1;
+        if (count < 2) return parseSequentially(source, reporter);
+
+        List<ForkJoinTask<Part>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int begin = boundaries[2 * i];
+            int line = boundaries[2 * i + 1];
+            int end = boundaries[2 * i + 2];
+            tasks.add(pool.submit(() -> Part.parse(source, begin, end, line)));
+        }
+
+        List<Stmt> statements = new ArrayList<>();
+        boolean failed = false;
+        for (ForkJoinTask<Part> task : tasks) {
+            Part part = task.join();
+            failed |= part.errors.hasErrors();
+            if (!failed) statements.addAll(part.statements);
+        }
+        if (failed) return parseSequentially(source, reporter);
+        return statements;
+    }
+
+    private static List<Stmt> parseSequentially(CharSequence source, ErrorReporter reporter) {
+        return new Parser(new Scanner(source, reporter), reporter).parse();
+    }
+
+    /**
+     * the statements and errors of a part of the source
+     */
+    private static final class Part {
+        final List<Stmt> statements;
+        final ErrorCollector errors;
+
+        private Part(List<Stmt> statements, ErrorCollector errors) {
+            this.statements = statements;
+            this.errors = errors;
+        }
+
+        static Part parse(CharSequence source, int begin, int end, int line) {
+            ErrorCollector errors = new ErrorCollector();
+            Parser parser = new Parser(new Scanner(source, begin, end, line, errors), errors);
+            return new Part(parser.parse(), errors);
+        }
+    }
+
+    /**
+     * find the boundaries to split the source into about `parts` parts
+     *
+     * @return {offset, line} of the start of every part,
+     *         followed by {length of the source, -1}
+     *         a single part if a `)` or `}` closes nothing, as the depth is lost from there
+     *         (the source is wrong anyway, and parsed sequentially to report it)
+     */
+    static int[] split(CharSequence source, int parts) {
+        int length = source.length();
+        int target = length / parts;
+
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+        boundaries.add(1);
+
+        int line = 1;
+        // nesting of both braces and parentheses
+        int depth = 0;
+        int next = target;
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i++);
+            switch (c) {
+                case '\n' -> line++;
+                case '"' -> {
+                    while (i < length && source.charAt(i) != '"') {
+                        if (source.charAt(i) == '\n') line++;
+                        i++;
+                    }
+                    // an unterminated string runs to the end, no more boundaries
+                    i++;
+                }
+                case '/' -> {
+                    if (i < length && source.charAt(i) == '/') {
+                        while (i < length && source.charAt(i) != '\n') i++;
+                    }
+                }
+                case '{', '(' -> depth++;
+                case ')' -> {
+                    if (--depth < 0) return new int[] {0, 1, length, -1};
+                }
+                case '}', ';' -> {
+                    if (c == '}' && --depth < 0) return new int[] {0, 1, length, -1};
+                    if (depth == 0 && i >= next && i < length && !followedByElse(source, i)) {
+                        boundaries.add(i);
+                        boundaries.add(line);
+                        next = i + target;
+                    }
+                }
+            }
+        }
+        boundaries.add(length);
+        boundaries.add(-1);
+
+        int[] result = new int[boundaries.size()];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = boundaries.get(k);
+        }
+        return result;
+    }
+
+    /**
+     * whether the next token after `from` is the keyword `else`,
+     * skipping whitespaces and comments
+     */
+    private static boolean followedByElse(CharSequence source, int from) {
+        int length = source.length();
+        int i = from;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                i++;
+            }
+            else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+                while (i < length && source.charAt(i) != '\n') i++;
+            }
+            else {
+                break;
+            }
+        }
+        String keyword = "else";
+        if (i + keyword.length() > length) return false;
+        for (int k = 0; k < keyword.length(); k++) {
+            if (source.charAt(i + k) != keyword.charAt(k)) return false;
+        }
+        int end = i + keyword.length();
+        return end == length || !isAlnumOrUnderline(source.charAt(end));
+    }
+}
@@ -1,6 +1,10 @@
 package com.coiggahou.lox;
 
+import com.coiggahou.lox.error.ConsoleErrorReporter;
+import com.coiggahou.lox.error.ErrorReporter;
+
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import static com.coiggahou.lox.TokenType.*;
@@ -11,49 +15,93 @@ class Parser {
     private boolean allowREPLSingleExpression = false;
     private boolean foundREPLSingleExpression = false;
 
+    /**
+     * a call can pass at most this many arguments
+     */
+    static final int MAX_ARGUMENTS = 255;
+
+    /**
+     * how many function bodies we are in, `return` is only allowed inside one
+     */
+    private int functionDepth = 0;
+
 
     /**
      * the input of the parse
-     * a sequence of tokens
+     * a stream of tokens, pulled only when the parser moves forward,
+     * so that the tokens don't have to be all in memory at once
+     */
+    private final TokenSource tokens;
+
+    /**
+     * where syntax errors go
      */
-    private final List<Token> tokens;
+    private final ErrorReporter reporter;
 
+    /**
+     * null unless metrics are on
+     */
+    private Metrics metrics;
+
+    /**
+     * parse a list of tokens which is already scanned
+     */
     Parser(List<Token> tokens) {
+        Iterator<Token> iterator = tokens.iterator();
+        Token eof = tokens.get(tokens.size() - 1);
+        this.tokens = () -> iterator.hasNext() ? iterator.next() : eof;
+        this.reporter = new ConsoleErrorReporter();
+        this.current = this.tokens.nextToken();
+        this.previous = this.current;
+    }
+
+    /**
+     * parse tokens while they are scanned
+     */
+    Parser(TokenSource tokens) {
+        this(tokens, new ConsoleErrorReporter());
+    }
+
+    Parser(TokenSource tokens, ErrorReporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
+        this.current = tokens.nextToken();
+        this.previous = this.current;
     }
 
     private static class ParseError extends RuntimeException {
     }
 
     /**
-     * index of the next token waiting to be parsed
+     * the next token waiting to be parsed
      */
-    private int current = 0;
+    private Token current;
+
+    /**
+     * the token consumed most recently
+     */
+    private Token previous;
 
     /**
      * aims to see if we reach EOF
      * which means we have no token left to parse
-     * instead of saying if current == tokens.size()
      */
     private boolean isAtEnd() {
-        return peek().type == EOF;
+        return current.type == EOF;
     }
 
     /**
      * look at the current token
      */
     private Token peek() {
-        return tokens.get(current);
+        return current;
     }
 
     /**
      * look at the previous token
      */
     private Token previous() {
-        if (current == 0) {
-            return tokens.get(0);
-        }
-        return tokens.get(current - 1);
+        return previous;
     }
 
     /**
@@ -61,7 +109,8 @@ class Parser {
      */
     private Token advance() {
         if (!isAtEnd()) {
-            current++;
+            previous = current;
+            current = tokens.nextToken();
         }
         return previous();
     }
@@ -92,7 +141,12 @@ class Parser {
     }
 
     private ParseError error(Token token, String message) {
-        Lox.error(token, message);
+        if (token.type == EOF) {
+            reporter.report(token.line, " at end", message);
+        }
+        else {
+            reporter.report(token.line, " at '" + token.lexeme + "'", message);
+        }
         return new ParseError();
     }
 
@@ -124,13 +178,16 @@ class Parser {
     }
 
     /**
-     * declaration -> variableDeclaration | statement
+     * declaration -> variableDeclaration | functionDeclaration | statement
      */
     private Stmt declaration() {
         try {
             if (match(VAR)) {
                 return variableDeclaration();
             }
+            if (match(FUN)) {
+                return functionDeclaration();
+            }
             return statement();
         } catch (ParseError error) {
             // if error occur when parsing the current declaration,
@@ -155,10 +212,53 @@ class Parser {
     }
 
     /**
-     * stmt -> printStmt | exprStmt | ifStmt | block
+     * functionDeclaration -> "fun" IDENTIFIER "(" parameters? ")" block
+     * parameters          -> IDENTIFIER ("," IDENTIFIER)*
+     */
+    private Stmt functionDeclaration() {
+        Token name = consume(IDENTIFIER, "expect function name");
+        consume(LEFT_PAREN, "expect '(' after function name");
+        List<Token> params = new ArrayList<>();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                if (params.size() >= MAX_ARGUMENTS) {
+                    // report but don't throw, the parser is not lost
+                    error(peek(), "can't have more than " + MAX_ARGUMENTS + " parameters");
+                }
+                Token param = consume(IDENTIFIER, "expect parameter name");
+                for (Token other : params) {
+                    if (other.lexeme.equals(param.lexeme)) {
+                        error(param, "duplicate parameter name");
+                    }
+                }
+                params.add(param);
+            } while (match(COMMA));
+        }
+        consume(RIGHT_PAREN, "expect ')' after parameters");
+        consume(LEFT_BRACE, "expect '{' before function body");
+
+        functionDepth++;
+        try {
+            List<Stmt> body = new ArrayList<>();
+            while (!check(RIGHT_BRACE) && !isAtEnd()) {
+                body.add(declaration());
+            }
+            consume(RIGHT_BRACE, "expect '}' at the end of a function body");
+            return new Stmt.FunctionStmt(name, params, body);
+        }
+        finally {
+            functionDepth--;
+        }
+    }
+
+    /**
+     * stmt -> printStmt | exprStmt | ifStmt | whileStmt | forStmt | returnStmt | block
      * printStmt -> "print" expr ";"
      * exprStmt  -> expr ";"
      * ifStmt    -> "if" "(" expression ")" statement ("else" statement)?
+     * whileStmt -> "while" "(" expression ")" statement
+     * forStmt   -> "for" "(" ... ")" statement
+     * returnStmt -> "return" expression? ";"
      * block     -> "{" declaration* "}"
      */
     private Stmt statement() {
@@ -174,6 +274,12 @@ class Parser {
         if (match(WHILE)) {
             return whileStatement();
         }
+        if (match(FOR)) {
+            return forStatement();
+        }
+        if (match(RETURN)) {
+            return returnStatement();
+        }
         return expressionStatement();
     }
 
@@ -214,20 +320,72 @@ class Parser {
      * whileStmt -> "while" "(" expression ")" statement
      */
     private Stmt whileStatement() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "expect '(' after 'while'");
         Expr cond = expression();
         consume(RIGHT_PAREN, "expect ')' after while conditional expression");
         Stmt body = statement();
-        return new Stmt.WhileStmt(cond, body);
+        return new Stmt.WhileStmt(keyword, cond, body);
+    }
+
+    private Stmt returnStatement() {
+        Token keyword = previous();
+        if (functionDepth == 0) {
+            error(keyword, "can't return from top-level code");
+        }
+        Expr value = null;
+        if (!check(SEMICOLON)) {
+            value = expression();
+        }
+        consume(SEMICOLON, "expect ';' after return value");
+        return new Stmt.ReturnStmt(keyword, value);
+    }
+
+    /**
+     * forStmt -> "for" "(" (variableDeclaration | exprStmt | ";")
+     *                      expression? ";"
+     *                      expression? ")" statement
+     */
+    private Stmt forStatement() {
+        Token keyword = previous();
+        consume(LEFT_PAREN, "expect '(' after 'for'");
+        Stmt initializer;
+        if (match(SEMICOLON)) {
+            initializer = null;
+        }
+        else if (match(VAR)) {
+            initializer = variableDeclaration();
+        }
+        else {
+            Expr expr = expression();
+            consume(SEMICOLON, "expect ';' after for loop initializer");
+            initializer = new Stmt.ExpressionStmt(expr);
+        }
+
+        Expr condition = null;
+        if (!check(SEMICOLON)) {
+            condition = expression();
+        }
+        consume(SEMICOLON, "expect ';' after for loop condition");
+
+        Expr increment = null;
+        if (!check(RIGHT_PAREN)) {
+            increment = expression();
+        }
+        consume(RIGHT_PAREN, "expect ')' after for clauses");
+
+        Stmt body = statement();
+        return new Stmt.ForStmt(keyword, initializer, condition, increment, body);
     }
 
     private Stmt block() {
+        Token brace = previous();
         List<Stmt> statements = new ArrayList<>();
         while (!check(RIGHT_BRACE) && !isAtEnd()) {
             statements.add(declaration());
         }
         consume(RIGHT_BRACE, "expect '}' at the end of a block");
-        return new Stmt.BlockStmt(statements);
+        return new Stmt.BlockStmt(brace, statements);
     }
 
     /**
@@ -354,13 +512,35 @@ class Parser {
     }
 
     /**
-     * unary -> ("!"|"-") unary | primary
+     * unary -> ("!"|"-") unary | call
      */
     private Expr unary() {
         if (match(BANG, MINUS)) {
             return new Expr.UnaryExpr(previous(), unary());
         }
-        return primary();
+        return call();
+    }
+
+    /**
+     * call      -> primary ( "(" arguments? ")" )*
+     * arguments -> expression ("," expression)*
+     */
+    private Expr call() {
+        Expr expr = primary();
+        while (match(LEFT_PAREN)) {
+            List<Expr> arguments = new ArrayList<>();
+            if (!check(RIGHT_PAREN)) {
+                do {
+                    if (arguments.size() >= MAX_ARGUMENTS) {
+                        error(peek(), "can't have more than " + MAX_ARGUMENTS + " arguments");
+                    }
+                    arguments.add(expression());
+                } while (match(COMMA));
+            }
+            Token paren = consume(RIGHT_PAREN, "expect ')' after arguments");
+            expr = new Expr.CallExpr(expr, paren, arguments);
+        }
+        return expr;
     }
 
     /**
@@ -406,11 +586,15 @@ class Parser {
             // we shouldn't add null statement
             if (stmt != null) statements.add(stmt);
         }
+        if (metrics != null) metrics.statementsParsed += statements.size();
         return statements;
     }
 
-    void resetTokenPointer() {
-        this.current = 0;
+    /**
+     * count the statements parsed into the metrics of the run
+     */
+    void reportTo(Metrics metrics) {
+        this.metrics = metrics;
     }
 
     Object parseRepl() {
@@ -0,0 +1,347 @@
+package com.coiggahou.lox;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * tells which lines of a script the Interpreter spends its time on
+ *
+ * two modes:
+ *    1. instrumenting: every statement and expression the Interpreter runs
+ *                      is counted and timed with System.nanoTime()
+ *                      exact, but makes the run several times slower
+ *    2. sampling:      only the statement being run is tracked,
+ *                      and a background thread looks at it every `interval`
+ *                      cheap, but only statistically right
+ *
+ * what is recorded is a tree of frames, one for every path of nodes
+ * from the top of the script down to the node being run (like a call tree),
+ * with recursion folded: a node met again on its own path (by a recursive call)
+ * goes on in the frame it already has up the path,
+ * so the tree is bounded by the size of the script, not by the number of calls
+ * from it come
+ *    1. a per-line hot-spot report (writeReport())
+ *    2. collapsed stacks for flame graph tools (writeCollapsedStacks()),
+ *       one line for every path: `frame;frame;frame value`
+ *
+ * NOTE:
+ *  a Profiler watches one Interpreter, on one thread, at a time
+ */
+public final class Profiler {
+
+    private final boolean sampling;
+
+    private final long intervalNanos;
+
+    /**
+     * the top of the script, the parent of every other frame
+     */
+    private final Frame root = new Frame(null, null);
+
+    /**
+     * the frame of the node being run
+     *
+     * the sampler thread reads it, but it is written with setOpaque()
+     * instead of being volatile, so a write costs no memory fence:
+     * the sampler only needs to see it eventually, and reads nothing else of a Frame
+     * but the `self` counter which only the sampler writes
+     */
+    private Frame current = root;
+
+    private static final VarHandle CURRENT;
+
+    static {
+        try {
+            CURRENT = MethodHandles.lookup().findVarHandle(Profiler.class, "current", Frame.class);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * for every enter() not exited yet:
+     * the frame to go back to on exit() (not always the parent, with recursion folded),
+     * and when instrumenting, when it was entered
+     * and how much of its time was spent in the ones entered from it
+     */
+    private Frame[] callers = new Frame[64];
+    private long[] startTimes = new long[64];
+    private long[] childTimes = new long[64];
+    private int depth = 0;
+
+    private Thread sampler;
+    private volatile boolean running;
+
+    private long startedAt;
+    private long elapsed;
+
+    private Profiler(boolean sampling, long intervalNanos) {
+        this.sampling = sampling;
+        this.intervalNanos = intervalNanos;
+    }
+
+    public static Profiler instrumenting() {
+        return new Profiler(false, 0);
+    }
+
+    public static Profiler sampling(long interval, TimeUnit unit) {
+        return new Profiler(true, unit.toNanos(interval));
+    }
+
+    boolean isSampling() {
+        return sampling;
+    }
+
+    void start() {
+        startedAt = System.nanoTime();
+        if (!sampling) return;
+        running = true;
+        sampler = new Thread(this::sample, "lox-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    void stop() {
+        elapsed += System.nanoTime() - startedAt;
+        if (!sampling) return;
+        running = false;
+        try {
+            sampler.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * the sampler thread is the only one writing Frame.self when sampling,
+     * and the frames are read only after it is joined
+     */
+    private void sample() {
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            Frame frame = (Frame) CURRENT.getOpaque(this);
+            if (frame != root) frame.self++;
+        }
+    }
+
+    void enter(Object node) {
+        Frame frame = current.child(node);
+        if (depth == callers.length) {
+            callers = Arrays.copyOf(callers, depth * 2);
+            startTimes = Arrays.copyOf(startTimes, depth * 2);
+            childTimes = Arrays.copyOf(childTimes, depth * 2);
+        }
+        callers[depth] = current;
+        if (!sampling) {
+            frame.count++;
+            childTimes[depth] = 0;
+            startTimes[depth] = System.nanoTime();
+        }
+        depth++;
+        CURRENT.setOpaque(this, frame);
+    }
+
+    /**
+     * leave the current frame,
+     * must be called for every enter(), even if the node throws
+     */
+    void exit() {
+        Frame frame = current;
+        depth--;
+        if (!sampling) {
+            long time = System.nanoTime() - startTimes[depth];
+            frame.self += time - childTimes[depth];
+            if (depth > 0) childTimes[depth - 1] += time;
+        }
+        Frame caller = callers[depth];
+        callers[depth] = null;
+        CURRENT.setOpaque(this, caller);
+    }
+
+    /**
+     * lines sorted by the time spent on them (self), hottest first
+     *
+     *    self:  time spent on the nodes of the line themselves
+     *    total: time spent on the line and everything run from it
+     *           (e.g. the body of a loop, for the line of the `while`)
+     */
+    public void writeReport(Appendable out) throws IOException {
+        Map<Integer, LineStats> lines = new TreeMap<>();
+        collect(root, -1, new HashSet<>(), lines);
+
+        List<Map.Entry<Integer, LineStats>> entries = new ArrayList<>(lines.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().self, a.getValue().self));
+
+        long all = root.total();
+        if (sampling) {
+            out.append(String.format("[profile] %d samples in %.1f ms%n", all, elapsed / 1e6));
+            out.append(String.format("%8s %10s %8s %10s %8s%n", "line", "self", "self%", "total", "total%"));
+            for (Map.Entry<Integer, LineStats> entry : entries) {
+                LineStats stats = entry.getValue();
+                out.append(String.format("%8d %10d %7.1f%% %10d %7.1f%%%n", entry.getKey(),
+                        stats.self, percent(stats.self, all), stats.total, percent(stats.total, all)));
+            }
+        }
+        else {
+            out.append(String.format("[profile] %.1f ms in total%n", elapsed / 1e6));
+            out.append(String.format("%8s %12s %12s %12s %8s%n", "line", "count", "self ms", "total ms", "self%"));
+            for (Map.Entry<Integer, LineStats> entry : entries) {
+                LineStats stats = entry.getValue();
+                out.append(String.format("%8d %12d %12.3f %12.3f %7.1f%%%n", entry.getKey(),
+                        stats.count, stats.self / 1e6, stats.total / 1e6, percent(stats.self, all)));
+            }
+        }
+    }
+
+    /**
+     * one line for every path with its self value,
+     * in microseconds when instrumenting, in samples when sampling
+     */
+    public void writeCollapsedStacks(Appendable out) throws IOException {
+        writeCollapsedStacks(root, "script", -1, out);
+    }
+
+    private void writeCollapsedStacks(Frame frame, String path, int parentLine, Appendable out) throws IOException {
+        long value = sampling ? frame.self : frame.self / 1000;
+        if (frame != root && value > 0) {
+            out.append(path).append(' ').append(Long.toString(value)).append('\n');
+        }
+        for (Frame child : frame.children.values()) {
+            int line = child.line(parentLine);
+            writeCollapsedStacks(child, path + ';' + line + ':' + child.kind(), line, out);
+        }
+    }
+
+    /**
+     * sum the frames up by line,
+     * a line is counted only once for `total` on a path (e.g. nested loops on one line)
+     */
+    private static void collect(Frame frame, int parentLine, Set<Integer> onPath, Map<Integer, LineStats> lines) {
+        for (Frame child : frame.children.values()) {
+            int line = child.line(parentLine);
+            LineStats stats = lines.computeIfAbsent(line, l -> new LineStats());
+            stats.count += child.count;
+            stats.self += child.self;
+            boolean added = onPath.add(line);
+            if (added) stats.total += child.total();
+            collect(child, line, onPath, lines);
+            if (added) onPath.remove(line);
+        }
+    }
+
+    private static double percent(long part, long all) {
+        return all == 0 ? 0 : 100.0 * part / all;
+    }
+
+    private static final class LineStats {
+        long count;
+        long self;
+        long total;
+    }
+
+    /**
+     * a node as reached by one path
+     */
+    private static final class Frame {
+        final Frame parent;
+
+        /**
+         * a Stmt or an Expr
+         */
+        final Object node;
+
+        final Map<Object, Frame> children = new IdentityHashMap<>();
+
+        /**
+         * the frame entered for a node from this one: the children,
+         * and the frames up the path of the nodes met again by recursion
+         */
+        private final Map<Object, Frame> entered = new IdentityHashMap<>();
+
+        /**
+         * times entered, only when instrumenting
+         */
+        long count;
+
+        /**
+         * nanoseconds when instrumenting, samples when sampling,
+         * spent on the node itself, not on its children
+         */
+        long self;
+
+        Frame(Frame parent, Object node) {
+            this.parent = parent;
+            this.node = node;
+        }
+
+        /**
+         * the child entered last time, which is very likely the one entered next
+         * (e.g. every time around a loop), so the map lookup can be skipped
+         */
+        private Frame lastChild;
+
+        Frame child(Object node) {
+            if (lastChild != null && lastChild.node == node) return lastChild;
+            Frame child = entered.get(node);
+            if (child == null) {
+                child = onPath(node);
+                if (child == null) {
+                    child = new Frame(this, node);
+                    children.put(node, child);
+                }
+                entered.put(node, child);
+            }
+            lastChild = child;
+            return child;
+        }
+
+        /**
+         * the frame of the node on the path down to this one, null if it is not on it
+         */
+        private Frame onPath(Object node) {
+            for (Frame frame = this; frame != null; frame = frame.parent) {
+                if (frame.node == node) return frame;
+            }
+            return null;
+        }
+
+        long total() {
+            long total = self;
+            for (Frame child : children.values()) {
+                total += child.total();
+            }
+            return total;
+        }
+
+        /**
+         * nodes without a token (e.g. a literal) are on the line of their parent
+         */
+        int line(int parentLine) {
+            int line = node instanceof Stmt
+                    ? LineFinder.line((Stmt) node)
+                    : LineFinder.line((Expr) node);
+            return line > 0 ? line : parentLine;
+        }
+
+        /**
+         * e.g. "while" for a Stmt.WhileStmt, "binary" for an Expr.BinaryExpr
+         */
+        String kind() {
+            String name = node.getClass().getSimpleName();
+            return name.substring(0, name.length() - 4).toLowerCase();
+        }
+    }
+}
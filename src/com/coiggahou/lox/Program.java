@@ -0,0 +1,66 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.ScriptError;
+
+import java.util.List;
+
+/**
+ * a script compiled by a LoxEngine, ready to be executed any number of times
+ *
+ * depending on the engine, it holds either
+ *    1. the optimized and resolved syntax tree, for the Interpreter
+ *    2. the Chunk, for the VM
+ *
+ * running it writes caches into the syntax tree:
+ *    1. a VarExpr or an AssignExpr of a global keeps the Globals.Cell it was found in
+ *    2. a BinaryExpr or an AssignExpr is given its Specialization, in place, when it is first run
+ * they are written without locking, and a run only uses a cached Cell of its own Globals
+ * (finding its own Cell again otherwise), so one Program can be executed
+ * by many threads at the same time, the Chunk of the VM is never written at all
+ *
+ * two threads specializing the same node is a benign race:
+ * they pick the same Specialization for the same values, any Specialization works
+ * for any values (deoptimizing to the generic path, which is always correct),
+ * so whichever write a thread sees, it gets the right result
+ *
+ * NOTE:
+ *  the Cells cached by the latest run stay in the tree after it, and through them its Globals,
+ *  so a Program which is kept (e.g. by a ProgramCache) keeps the globals of the last Session
+ *  which ran it alive, until another Session runs it or the Program is dropped
+ */
+public final class Program {
+
+    /**
+     * the statements to run, or null if the program is a single expression
+     * (the REPL prints its value) or runs on the VM
+     */
+    final List<Stmt> statements;
+
+    final Expr expression;
+
+    final Chunk chunk;
+
+    /**
+     * errors found when compiling, a program with errors can not be executed
+     */
+    private final List<ScriptError> errors;
+
+    Program(List<Stmt> statements, Expr expression, Chunk chunk, List<ScriptError> errors) {
+        this.statements = statements;
+        this.expression = expression;
+        this.chunk = chunk;
+        this.errors = errors;
+    }
+
+    static Program failed(List<ScriptError> errors) {
+        return new Program(null, null, null, errors);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<ScriptError> errors() {
+        return errors;
+    }
+}
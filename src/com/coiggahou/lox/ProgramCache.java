@@ -0,0 +1,127 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.util.SourceFiles;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * remembers the Programs compiled by an engine,
+ * so a script that is run again skips scanning, parsing and resolving
+ *
+ * a script is looked up by the SHA-256 of its content,
+ * not by its path, so an edited file is never given a stale Program
+ *
+ * at most `capacity` programs are kept,
+ * the least recently used one is dropped to make room for a new one
+ *
+ * it is safe to share between threads, as a Program is (see Program)
+ * NOTE:
+ *  compiling happens outside the lock,
+ *  so two threads missing the same script at once may both compile it,
+ *  which wastes some work but gives the same Program
+ *
+ *  a cached Program keeps the globals of the last Session which ran it alive,
+ *  so the cache holds on to at most `capacity` sets of globals on top of the Programs,
+ *  which are let go as the Programs are evicted
+ */
+public final class ProgramCache {
+
+    private final LoxEngine engine;
+
+    private final int capacity;
+
+    /**
+     * in access order, the eldest entry is the least recently used
+     * guarded by `this`
+     */
+    private final LinkedHashMap<Key, Program> programs;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ProgramCache(LoxEngine engine, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.engine = engine;
+        this.capacity = capacity;
+        this.programs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Program> eldest) {
+                if (size() <= ProgramCache.this.capacity) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * the cached Program of the source, compiled by the engine on a miss
+     */
+    public Program compile(CharSequence source) {
+        Key key = Key.of(source);
+        synchronized (this) {
+            Program program = programs.get(key);
+            if (program != null) {
+                hits.incrementAndGet();
+                return program;
+            }
+        }
+
+        misses.incrementAndGet();
+        Program program = engine.compile(source);
+        synchronized (this) {
+            Program raced = programs.putIfAbsent(key, program);
+            return raced != null ? raced : program;
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return programs.size();
+    }
+
+    public synchronized void clear() {
+        programs.clear();
+    }
+
+    /**
+     * the content hash of a source
+     */
+    private static final class Key {
+        private final byte[] digest;
+        private final int hashCode;
+
+        private Key(byte[] digest) {
+            this.digest = digest;
+            this.hashCode = Arrays.hashCode(digest);
+        }
+
+        static Key of(CharSequence source) {
+            return new Key(SourceFiles.sha256(source));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(digest, ((Key) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
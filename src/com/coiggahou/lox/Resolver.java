@@ -0,0 +1,263 @@
+package com.coiggahou.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a static pass that runs between the Parser and the Interpreter
+ *
+ * it walks the tree once, and for every variable reference
+ * inside a block, it figures out
+ *    1. depth: how many scopes we have to go up to reach the definition
+ *    2. slot:  the index of the variable inside that scope
+ * so the Interpreter can fetch the variable with array indexing
+ * instead of hashing the name at every level of the scope chain
+ *
+ * NOTE:
+ *  the global scope is never put on the stack,
+ *  so any reference that can not be bound to a block scope
+ *  is marked as a global (depth == -1, global == true),
+ *  and will find its Cell in the Globals at runtime
+ */
+class Resolver implements Expr.Visitor<Void>,
+                          Stmt.Visitor<Void> {
+
+    /**
+     * stack of the block scopes enclosing the code being resolved,
+     * each maps a variable name to its slot index in that block
+     */
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+
+    /**
+     * the functions enclosing the code being resolved, innermost last
+     */
+    private final List<Stmt.FunctionStmt> functions = new ArrayList<>();
+
+    void resolve(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            resolve(statement);
+        }
+    }
+
+    void resolve(Expr expr) {
+        if (expr == null) return;
+        expr.accept(this);
+    }
+
+    private void resolve(Stmt stmt) {
+        // parser may leave null statements inside a block after an error
+        if (stmt == null) return;
+        stmt.accept(this);
+    }
+
+    private void beginScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void endScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    /**
+     * declare a variable in the innermost scope
+     *
+     * as redefinition is allowed in Lox,
+     * declaring the same name twice in one scope reuses its slot
+     * @return the slot of the variable, or -1 if it is a global
+     */
+    private int declare(Token name) {
+        if (scopes.isEmpty()) return -1;
+        Map<String, Integer> scope = scopes.get(scopes.size() - 1);
+        Integer slot = scope.get(name.lexeme);
+        if (slot == null) {
+            slot = scope.size();
+            scope.put(name.lexeme, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * search the name from the innermost scope to the outermost one
+     * @return {depth, slot}, or null if it is not defined in any block scope
+     */
+    private int[] lookup(Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Integer slot = scopes.get(i).get(name.lexeme);
+            if (slot != null) {
+                return new int[] { scopes.size() - 1 - i, slot };
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.BinaryExpr expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.UnaryExpr expr) {
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.GroupingExpr expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.LiteralExpr expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitVarExpr(Expr.VarExpr expr) {
+        int[] location = lookup(expr.identifier);
+        if (location != null) {
+            expr.depth = location[0];
+            expr.slot = location[1];
+        }
+        expr.global = location == null;
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.AssignExpr expr) {
+        resolve(expr.assigner);
+        int[] location = lookup(expr.assignee);
+        if (location != null) {
+            expr.depth = location[0];
+            expr.slot = location[1];
+        }
+        expr.global = location == null;
+        return null;
+    }
+
+    @Override
+    public Void visitLogicExpr(Expr.LogicExpr expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.CallExpr expr) {
+        resolve(expr.callee);
+        for (Expr argument : expr.arguments) {
+            resolve(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.ExpressionStmt stmt) {
+        resolve(stmt.expr);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.PrintStmt stmt) {
+        resolve(stmt.expr);
+        return null;
+    }
+
+    /**
+     * the initializer is resolved BEFORE the name is declared,
+     * so that in
+     *      var a = 1;
+     *      { var a = a + 2; }
+     * the `a` on the right still refers to the outer one
+     */
+    @Override
+    public Void visitDeclarationStmt(Stmt.DeclarationStmt stmt) {
+        resolve(stmt.initializer);
+        stmt.slot = declare(stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.BlockStmt stmt) {
+        if (!stmt.scoped) {
+            resolve(stmt.declarations);
+            return null;
+        }
+        beginScope();
+        resolve(stmt.declarations);
+        stmt.slotCount = scopes.get(scopes.size() - 1).size();
+        endScope();
+        return null;
+    }
+
+    /**
+     * the name is declared BEFORE the body is resolved,
+     * so the function can call itself
+     *
+     * a call has one scope for the parameters (slot i for the i-th one)
+     * and the variables declared directly in the body,
+     * and every function enclosing this one gets `hasClosures`,
+     * as this one may keep their frames alive
+     */
+    @Override
+    public Void visitFunctionStmt(Stmt.FunctionStmt stmt) {
+        stmt.slot = declare(stmt.name);
+        for (Stmt.FunctionStmt enclosing : functions) {
+            enclosing.hasClosures = true;
+        }
+
+        functions.add(stmt);
+        beginScope();
+        for (Token param : stmt.params) {
+            declare(param);
+        }
+        resolve(stmt.body);
+        stmt.slotCount = scopes.get(scopes.size() - 1).size();
+        endScope();
+        functions.remove(functions.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.ReturnStmt stmt) {
+        resolve(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.IfStmt stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.thenBranch);
+        resolve(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.WhileStmt stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.loopBody);
+        return null;
+    }
+
+    /**
+     * the loop variable lives in a scope of its own,
+     * between the enclosing scope and the one of the body
+     */
+    @Override
+    public Void visitForStmt(Stmt.ForStmt stmt) {
+        if (stmt.scoped) beginScope();
+        resolve(stmt.initializer);
+        resolve(stmt.condition);
+        resolve(stmt.increment);
+        resolve(stmt.loopBody);
+        if (stmt.scoped) {
+            stmt.slotCount = scopes.get(scopes.size() - 1).size();
+            endScope();
+        }
+        return null;
+    }
+}
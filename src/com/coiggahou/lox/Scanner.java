@@ -1,5 +1,9 @@
 package com.coiggahou.lox;
 
+import com.coiggahou.lox.error.ConsoleErrorReporter;
+import com.coiggahou.lox.error.ErrorReporter;
+import com.coiggahou.lox.util.StringInterner;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -12,14 +16,72 @@ import static com.coiggahou.lox.util.CharUtil.*;
  * to scan through the list of characters and
  * group them together into the smallest sequences
  * that still represent something
+ *
+ * tokens can be pulled one by one with nextToken(),
+ * so the Parser doesn't need the whole token list in memory,
+ * or all at once with scanTokens()
  */
-public class Scanner {
+public class Scanner implements TokenSource {
+    /**
+     * the raw source code,
+     * any CharSequence will do (a String, a CharBuffer over a file...)
+     */
+    private final CharSequence source;
+
+    /**
+     * where scanning stops, the length of the source unless only a part is scanned
+     */
+    private final int length;
+
+    /**
+     * every distinct identifier name is only copied out of the source once
+     */
+    private final StringInterner identifiers = new StringInterner();
+
     /**
-     * store the raw source code as a simple string
+     * the lexemes of number literals,
+     * apart from the identifiers so they don't crowd their table
      */
-    private final String source;
+    private final StringInterner numerals = new StringInterner();
+
+    /**
+     * a long holds any 18 digits
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * 2^53, the largest of the integers a double holds all of exactly
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * 10^0 to 10^22, the powers of 10 that are exact doubles
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    /**
+     * literals of the small integers (most of the literals in a script)
+     * share one boxed Double each instead of getting their own
+     */
+    private static final Double[] SMALL_INTEGERS = new Double[256];
+
+    static {
+        double power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+        for (int i = 0; i < SMALL_INTEGERS.length; i++) {
+            SMALL_INTEGERS[i] = (double) i;
+        }
+    }
 
 
+    /**
+     * all the reserved words,
+     * scanIdentifier() recognizes them with keywordType() without a lookup here,
+     * the table is kept as the source of their lexemes
+     */
     private static final Map<String, TokenType> keywords;
 
     static {
@@ -42,8 +104,28 @@ public class Scanner {
         keywords.put("while",  TokenType.WHILE);
     }
 
+    /**
+     * the lexeme of every token type whose text never changes
+     * (punctuation, operators and keywords), indexed by ordinal,
+     * so all those tokens share one String instead of a substring each
+     */
+    private static final String[] fixedLexemes = new String[TokenType.values().length];
 
-    private final List<Token> tokens = new ArrayList<>();
+    static {
+        String[][] punctuations = {
+            {"(", "LEFT_PAREN"}, {")", "RIGHT_PAREN"}, {"{", "LEFT_BRACE"}, {"}", "RIGHT_BRACE"},
+            {",", "COMMA"}, {".", "DOT"}, {"-", "MINUS"}, {"+", "PLUS"},
+            {";", "SEMICOLON"}, {"/", "SLASH"}, {"*", "STAR"},
+            {"!", "BANG"}, {"!=", "BANG_EQUAL"}, {"=", "EQUAL"}, {"==", "EQUAL_EQUAL"},
+            {">", "GREATER"}, {">=", "GREATER_EQUAL"}, {"<", "LESS"}, {"<=", "LESS_EQUAL"},
+        };
+        for (String[] punctuation : punctuations) {
+            fixedLexemes[TokenType.valueOf(punctuation[1]).ordinal()] = punctuation[0];
+        }
+        for (Map.Entry<String, TokenType> keyword : keywords.entrySet()) {
+            fixedLexemes[keyword.getValue().ordinal()] = keyword.getKey();
+        }
+    }
 
     /**
      * we use double cursor to scan chars
@@ -61,31 +143,57 @@ public class Scanner {
     private int line = 1;
 
 
-    public Scanner(String source) {
-        this.source = source;
+    /**
+     * where lexical errors go
+     */
+    private final ErrorReporter reporter;
+
+    /**
+     * null unless metrics are on
+     */
+    private Metrics metrics;
+
+    public Scanner(CharSequence source) {
+        this(source, new ConsoleErrorReporter());
+    }
+
+    public Scanner(CharSequence source, ErrorReporter reporter) {
+        this(source, 0, source.length(), 1, reporter);
     }
 
+    /**
+     * scan only source[begin, end), whose first line is `line` of the whole source,
+     * so a part of the source can be scanned on its own with the right line numbers
+     */
+    public Scanner(CharSequence source, int begin, int end, int line, ErrorReporter reporter) {
+        this.source = source;
+        this.length = end;
+        this.start = begin;
+        this.current = begin;
+        this.line = line;
+        this.reporter = reporter;
+    }
 
 
     /**
-     * for adding simple tokens which don't even need a text
+     * for making simple tokens whose text is always the same
      */
-    private void addToken(TokenType type) {
-        addToken(type, null);
+    private Token makeToken(TokenType type) {
+        return new Token(type, fixedLexemes[type.ordinal()], null, line);
     }
 
     /**
-     * for adding normal token which has text and literal
+     * for making normal token which has text and literal
      */
-    private void addToken(TokenType type, Object literal) {
-        // we save the text of every token here
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+    private Token makeToken(TokenType type, Object literal) {
+        // only tokens like these need their own copy of the text
+        String text = source.subSequence(start, current).toString();
+        return new Token(type, text, literal, line);
     }
 
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= length;
     }
 
 
@@ -104,7 +212,7 @@ public class Scanner {
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
+        if (current + 1 >= length) return '\0';
         return source.charAt(current+1);
     }
 
@@ -130,7 +238,7 @@ public class Scanner {
         return true;
     }
 
-    private void scanStringLiteral() {
+    private Token scanStringLiteral() {
         while (!isAtEnd() && peek() != '"') {
             // support multi-line string
             if (peek() == '\n') line++;
@@ -138,8 +246,8 @@ public class Scanner {
         }
         // if we already reach the end and still didn't find the end quote, report error
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string");
-            return;
+            reporter.report(line, "", "Unterminated string");
+            return null;
         }
 
         /*
@@ -150,16 +258,16 @@ public class Scanner {
         eat();
 
         // trim the surrounding quotes
-        String literal = source.substring(start+1, current-1);
+        String literal = source.subSequence(start+1, current-1).toString();
 
-        addToken(TokenType.STRING, literal);
+        return makeToken(TokenType.STRING, literal);
     }
 
 
     /**
      * eats a number like 3.1415
      */
-    private void scanNumber() {
+    private Token scanNumber() {
         // eats the digit before the (possible) dot
         while (isDigit(peek())) {
             eat();
@@ -173,31 +281,131 @@ public class Scanner {
             eat(); // eat the '.'
             while (isDigit(peek())) eat();
         }
-        addToken(TokenType.NUMBER, Double.parseDouble(source.substring(start, current)));
+        /*
+            read the value from the chars in place,
+            the digits are gathered into a long mantissa as long as it is exact,
+            with the number of digits after the dot as a negative power of 10
+         */
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        int hash = 0;
+        for (int i = start; i < current; i++) {
+            char c = source.charAt(i);
+            hash = 31 * hash + c;
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            if (fraction) fractionDigits++;
+            if (++digits <= MAX_LONG_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+            }
+        }
+        // the same literal appearing again shares its lexeme, like an identifier
+        String text = numerals.intern(source, start, current, hash);
+        return new Token(TokenType.NUMBER, text, numberValue(text, mantissa, digits, fractionDigits), line);
+    }
+
+    /**
+     * Clinger's fast path:
+     * when both the mantissa and the power of 10 are exact doubles,
+     * one division gives the correctly rounded value,
+     * anything else (e.g. more than 15 or 16 digits) goes to Double.parseDouble()
+     */
+    private static Double numberValue(String text, long mantissa, int digits, int fractionDigits) {
+        if (digits > MAX_LONG_DIGITS
+                || mantissa > MAX_EXACT_MANTISSA
+                || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(text);
+        }
+        double value = fractionDigits == 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+        if (value < SMALL_INTEGERS.length && value == (int) value) {
+            return SMALL_INTEGERS[(int) value];
+        }
+        return value;
     }
 
-    private void scanIdentifier() {
+    private Token scanIdentifier() {
+        // hash the name on the way, for the intern table
+        int hash = source.charAt(start);
         while (isAlnumOrUnderline(peek())) {
-            eat();
+            hash = 31 * hash + eat();
         }
-        String identifierStr = source.substring(start, current);
 
         /*
           We first suppose the identifier is a reserved keyword,
           if it is not a reserved keyword,
           then it is just an identifier
          */
-        TokenType type = keywords.get(identifierStr);
-        if (type == null) type = TokenType.IDENTIFIER;
+        TokenType type = keywordType(source, start, current);
+        if (type == null) {
+            // the same name appearing again shares the String of its first appearance
+            String name = identifiers.intern(source, start, current, hash);
+            return new Token(TokenType.IDENTIFIER, name, null, line);
+        }
+        return makeToken(type);
+    }
+
+    /**
+     * recognize a keyword by checking the characters in place,
+     * branching on the first (and for `f` and `t`, the second) character
+     * @return the keyword type of source[start, end), or null if it's not a keyword
+     */
+    static TokenType keywordType(CharSequence source, int start, int end) {
+        switch (source.charAt(start)) {
+            case 'a': return checkKeyword(source, start, end, 1, "nd", TokenType.AND);
+            case 'c': return checkKeyword(source, start, end, 1, "lass", TokenType.CLASS);
+            case 'e': return checkKeyword(source, start, end, 1, "lse", TokenType.ELSE);
+            case 'f':
+                if (end - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a': return checkKeyword(source, start, end, 2, "lse", TokenType.FALSE);
+                        case 'o': return checkKeyword(source, start, end, 2, "r", TokenType.FOR);
+                        case 'u': return checkKeyword(source, start, end, 2, "n", TokenType.FUN);
+                    }
+                }
+                break;
+            case 'i': return checkKeyword(source, start, end, 1, "f", TokenType.IF);
+            case 'n': return checkKeyword(source, start, end, 1, "il", TokenType.NIL);
+            case 'o': return checkKeyword(source, start, end, 1, "r", TokenType.OR);
+            case 'p': return checkKeyword(source, start, end, 1, "rint", TokenType.PRINT);
+            case 'r': return checkKeyword(source, start, end, 1, "eturn", TokenType.RETURN);
+            case 's': return checkKeyword(source, start, end, 1, "uper", TokenType.SUPER);
+            case 't':
+                if (end - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'h': return checkKeyword(source, start, end, 2, "is", TokenType.THIS);
+                        case 'r': return checkKeyword(source, start, end, 2, "ue", TokenType.TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword(source, start, end, 1, "ar", TokenType.VAR);
+            case 'w': return checkKeyword(source, start, end, 1, "hile", TokenType.WHILE);
+        }
+        return null;
+    }
 
-        addToken(type);
+    /**
+     * @return type if source[start + offset, end) is exactly `rest`, otherwise null
+     */
+    private static TokenType checkKeyword(CharSequence source, int start, int end,
+                                          int offset, String rest, TokenType type) {
+        if (end - start != offset + rest.length()) return null;
+        for (int i = 0; i < rest.length(); i++) {
+            if (source.charAt(start + offset + i) != rest.charAt(i)) return null;
+        }
+        return type;
     }
 
     /**
      * try its best to recognize **one** token in the coming character-stream
      * or else report error
+     * @return the token, or null if the characters make no token
+     *         (whitespaces, comments, errors)
      */
-    private void scanToken() {
+    private Token scanToken() {
         char c = eat();
         switch (c) {
 
@@ -213,16 +421,16 @@ public class Scanner {
                 break;
 
             // for single-character tokens, we just need to recognize them
-            case '(': addToken(TokenType.LEFT_PAREN); break;
-            case ')': addToken(TokenType.RIGHT_PAREN); break;
-            case '{': addToken(TokenType.LEFT_BRACE); break;
-            case '}': addToken(TokenType.RIGHT_BRACE); break;
-            case ',': addToken(TokenType.COMMA); break;
-            case '.': addToken(TokenType.DOT); break;
-            case ';': addToken(TokenType.SEMICOLON); break;
-            case '*': addToken(TokenType.STAR); break;
-            case '-': addToken(TokenType.MINUS); break;
-            case '+': addToken(TokenType.PLUS); break;
+            case '(': return makeToken(TokenType.LEFT_PAREN);
+            case ')': return makeToken(TokenType.RIGHT_PAREN);
+            case '{': return makeToken(TokenType.LEFT_BRACE);
+            case '}': return makeToken(TokenType.RIGHT_BRACE);
+            case ',': return makeToken(TokenType.COMMA);
+            case '.': return makeToken(TokenType.DOT);
+            case ';': return makeToken(TokenType.SEMICOLON);
+            case '*': return makeToken(TokenType.STAR);
+            case '-': return makeToken(TokenType.MINUS);
+            case '+': return makeToken(TokenType.PLUS);
 
             case '/':
                 if (currentCharMatch('/')) {
@@ -238,7 +446,7 @@ public class Scanner {
                 }
                 else {
                     // treat as arithmetic divider
-                    addToken(TokenType.SLASH);
+                    return makeToken(TokenType.SLASH);
                 }
                 break;
 
@@ -247,49 +455,76 @@ public class Scanner {
               we have to look ahead one more step
              */
             case '!':
-                addToken(currentCharMatch('=') ? TokenType.BANG_EQUAL : TokenType.BANG);
-                break;
+                return makeToken(currentCharMatch('=') ? TokenType.BANG_EQUAL : TokenType.BANG);
             case '=':
-                addToken(currentCharMatch('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL);
-                break;
+                return makeToken(currentCharMatch('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL);
             case '<':
-                addToken(currentCharMatch('=') ? TokenType.LESS_EQUAL : TokenType.LESS);
-                break;
+                return makeToken(currentCharMatch('=') ? TokenType.LESS_EQUAL : TokenType.LESS);
             case '>':
-                addToken(currentCharMatch('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER);
-                break;
+                return makeToken(currentCharMatch('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER);
 
             // string literals
             case '"':
-                scanStringLiteral();
-                break;
+                return scanStringLiteral();
 
 
             default:
                 if (isDigit(c)) {
                     // if meet 0-9, start scanning number
-                    scanNumber();
+                    return scanNumber();
                 }
                 else if (isAlphaOrUnderline(c)) {
-                    scanIdentifier();
+                    return scanIdentifier();
                 }
                 else {
                     // report error if meeting any illegal character like @^#...
-                    Lox.error(line, "Unexpected character");
+                    reporter.report(line, "", "Unexpected character");
                 }
                 break;
         }
+        return null;
     }
 
 
+    /**
+     * count the tokens and the time spent scanning them into the metrics
+     */
+    void reportTo(Metrics metrics) {
+        this.metrics = metrics;
+    }
 
-    List<Token> scanTokens() {
+    /**
+     * scan and return the next token,
+     * an EOF token is returned when the source runs out (and ever after)
+     */
+    @Override
+    public Token nextToken() {
+        if (metrics == null) return scanNextToken();
+        long start = System.nanoTime();
+        Token token = scanNextToken();
+        metrics.tokenScanned(System.nanoTime() - start);
+        return token;
+    }
+
+    private Token scanNextToken() {
         while (!isAtEnd()) {
             start = current;
-            scanToken();
+            Token token = scanToken();
+            if (token != null) return token;
         }
-        // add an extra EOF token at last
-        tokens.add(new Token(TokenType.EOF, "", null, line));
+        return new Token(TokenType.EOF, "", null, line);
+    }
+
+    /**
+     * scan the whole source at once
+     */
+    List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != TokenType.EOF);
         return tokens;
     }
 
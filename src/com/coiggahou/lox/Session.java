@@ -0,0 +1,117 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.ExecutionLimitError;
+import com.coiggahou.lox.error.RuntimeError;
+import com.coiggahou.lox.error.ScriptError;
+import com.coiggahou.lox.output.OutputSink;
+
+/**
+ * the state of running programs: global variables and where the output goes
+ *
+ * global variables survive from one execute() to the next,
+ * which is what the REPL needs,
+ * LoxEngine.execute() uses a new Session for every run
+ *
+ * NOTE:
+ *  a Session is NOT thread-safe, use one for each thread,
+ *  except for cancel(), which is meant to be called from another thread
+ */
+public final class Session {
+
+    private final OutputSink output;
+
+    /**
+     * profiles the programs run on the Interpreter, null for none
+     */
+    private final Profiler profiler;
+
+    /**
+     * null unless metrics are on
+     */
+    private final Metrics metrics;
+
+    /**
+     * the limits of every run
+     */
+    private final ExecutionLimits limits;
+
+    private volatile boolean cancelled;
+
+    /**
+     * created on first use, as a session usually runs
+     * programs for only one of them
+     */
+    private Interpreter interpreter;
+    private VM vm;
+
+    Session(OutputSink output, Profiler profiler, Metrics metrics, ExecutionLimits limits) {
+        this.output = output;
+        this.profiler = profiler;
+        this.metrics = metrics;
+        this.limits = limits;
+    }
+
+    /**
+     * run the program, a program with compile errors is not run at all
+     */
+    public ExecutionResult execute(Program program) {
+        if (program.hasErrors()) return ExecutionResult.of(program, null);
+        if (program.chunk != null && profiler != null) {
+            throw new UnsupportedOperationException("profiling is only supported on the Interpreter");
+        }
+        if (profiler != null) profiler.start();
+        long start = System.nanoTime();
+        Budget budget = new Budget(limits, this);
+        try {
+            if (program.chunk != null) {
+                if (vm == null) vm = new VM(output);
+                vm.limitTo(budget);
+                vm.interpret(program.chunk);
+            }
+            else {
+                if (interpreter == null) interpreter = new Interpreter(output, profiler, metrics);
+                interpreter.limitTo(budget);
+                if (program.expression != null) {
+                    interpreter.interpret(program.expression);
+                }
+                else {
+                    interpreter.interpret(program.statements);
+                }
+            }
+        }
+        catch (RuntimeError error) {
+            int line = error.getToken() != null ? error.getToken().line : error.getLine();
+            ExecutionLimitError.Limit limit = error instanceof ExecutionLimitError
+                    ? ((ExecutionLimitError) error).getLimit()
+                    : null;
+            return ExecutionResult.of(program, new ScriptError(line, "", error.getMessage(), true), limit);
+        }
+        catch (StackOverflowError error) {
+            // unbounded recursion, the scopes and the profiler are unwound by their finally blocks
+            return ExecutionResult.of(program, new ScriptError(0, "", "Stack overflow.", true));
+        }
+        finally {
+            if (metrics != null) metrics.executeNanos += System.nanoTime() - start;
+            if (profiler != null) profiler.stop();
+        }
+        return ExecutionResult.of(program, null);
+    }
+
+    /**
+     * stop the run going on (on another thread) with an ExecutionLimitError,
+     * at its next loop back-edge or call
+     *
+     * a cancelled Session stays cancelled: the runs after it stop too
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public OutputSink output() {
+        return output;
+    }
+}
@@ -0,0 +1,561 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.util.SourceFiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a binary copy of a parsed syntax tree, written next to the script
+ * (`script.lox` -> `script.lox.snap`),
+ * so a new JVM can load the tree instead of scanning and parsing the script again
+ *
+ * layout:
+ *      "LOXS"                      magic
+ *      u16                         VERSION
+ *      32 bytes                    SHA-256 of the source (see SourceFiles.sha256())
+ *      varint                      number of statements
+ *      node ...                    the statements, in prefix order
+ *
+ * a node is a tag byte followed by its fields, a null node is just TAG_NULL,
+ * a token is its type, its lexeme and its line,
+ * strings are written once and referred to by index after that,
+ * which also interns the identifiers like the Scanner does
+ *
+ * it is the tree right out of the Parser, before any optimization,
+ * so the same snapshot works with any option of the engine
+ *
+ * a snapshot with another version or checksum, or broken in any way,
+ * is ignored, and the script is parsed as usual
+ */
+final class Snapshot {
+
+    /**
+     * bump it whenever the layout or the tree changes
+     */
+    static final int VERSION = 4;
+
+    private static final byte[] MAGIC = {'L', 'O', 'X', 'S'};
+
+    private static final int CHECKSUM_LENGTH = 32;
+
+    private static final int TAG_NULL = 0;
+
+    private static final int TAG_BINARY = 1;
+    private static final int TAG_UNARY = 2;
+    private static final int TAG_GROUPING = 3;
+    private static final int TAG_LITERAL = 4;
+    private static final int TAG_VAR = 5;
+    private static final int TAG_ASSIGN = 6;
+    private static final int TAG_LOGIC = 7;
+    private static final int TAG_CALL = 8;
+
+    private static final int TAG_EXPRESSION_STMT = 16;
+    private static final int TAG_PRINT = 17;
+    private static final int TAG_DECLARATION = 18;
+    private static final int TAG_BLOCK = 19;
+    private static final int TAG_IF = 20;
+    private static final int TAG_WHILE = 21;
+    private static final int TAG_FOR = 22;
+    private static final int TAG_FUNCTION = 23;
+    private static final int TAG_RETURN = 24;
+
+    /**
+     * the kinds of a literal value
+     */
+    private static final int LITERAL_NIL = 0;
+    private static final int LITERAL_TRUE = 1;
+    private static final int LITERAL_FALSE = 2;
+    private static final int LITERAL_NUMBER = 3;
+    private static final int LITERAL_STRING = 4;
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private Snapshot() {
+    }
+
+    static Path pathOf(Path script) {
+        return script.resolveSibling(script.getFileName() + ".snap");
+    }
+
+    /**
+     * write the snapshot of a parsed script
+     *
+     * it is written to a temporary file first and then moved into place,
+     * so a reader never sees a half-written snapshot
+     */
+    static void write(Path snapshot, CharSequence source, List<Stmt> statements) throws IOException {
+        Writer writer = new Writer();
+        writer.out.write(MAGIC, 0, MAGIC.length);
+        writer.out.write(VERSION >>> 8);
+        writer.out.write(VERSION);
+        writer.out.write(SourceFiles.sha256(source), 0, CHECKSUM_LENGTH);
+        writer.writeStatements(statements);
+
+        // unique for each writer, in case the same script is run more than once at a time
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + "."
+                + ProcessHandle.current().pid() + "-" + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.write(temporary, writer.out.toByteArray());
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * load the statements of a snapshot with one read of the file
+     * @return the statements, or null if there is no valid snapshot for the source
+     */
+    static List<Stmt> read(Path snapshot, CharSequence source) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(snapshot);
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+        return read(ByteBuffer.wrap(bytes), SourceFiles.sha256(source));
+    }
+
+    static List<Stmt> read(ByteBuffer in, byte[] checksum) {
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) return null;
+            if ((in.getShort() & 0xffff) != VERSION) return null;
+            byte[] stored = new byte[CHECKSUM_LENGTH];
+            in.get(stored);
+            if (!Arrays.equals(stored, checksum)) return null;
+
+            List<Stmt> statements = new Reader(in).readStatements();
+            // anything left over means the file is not what we wrote
+            return in.hasRemaining() ? null : statements;
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException
+               | IllegalArgumentException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    private static final class Writer implements Expr.Visitor<Void>,
+                                                 Stmt.Visitor<Void> {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+
+        /**
+         * index of every string written so far
+         */
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        void writeStatements(List<Stmt> statements) {
+            writeVarint(statements.size());
+            for (Stmt statement : statements) {
+                write(statement);
+            }
+        }
+
+        private void write(Stmt stmt) {
+            if (stmt == null) {
+                out.write(TAG_NULL);
+                return;
+            }
+            stmt.accept(this);
+        }
+
+        private void write(Expr expr) {
+            if (expr == null) {
+                out.write(TAG_NULL);
+                return;
+            }
+            expr.accept(this);
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        /**
+         * a new string is written as (0, length, UTF-8 bytes),
+         * one seen before as (index + 1)
+         */
+        private void writeString(String string) {
+            Integer index = strings.get(string);
+            if (index != null) {
+                writeVarint(index + 1);
+                return;
+            }
+            strings.put(string, strings.size());
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(0);
+            writeVarint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * the literal of a token is not written,
+         * only operators and names are kept in the tree, which have none
+         */
+        private void writeToken(Token token) {
+            out.write(token.type.ordinal());
+            writeString(token.lexeme);
+            writeVarint(token.line);
+        }
+
+        private void writeLiteral(Object value) {
+            if (value == null) {
+                out.write(LITERAL_NIL);
+            }
+            else if (value instanceof Boolean) {
+                out.write((boolean) value ? LITERAL_TRUE : LITERAL_FALSE);
+            }
+            else if (value instanceof Double) {
+                out.write(LITERAL_NUMBER);
+                long bits = Double.doubleToRawLongBits((double) value);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (bits >>> shift));
+                }
+            }
+            else {
+                out.write(LITERAL_STRING);
+                writeString((String) value);
+            }
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.BinaryExpr expr) {
+            out.write(TAG_BINARY);
+            write(expr.left);
+            writeToken(expr.operator);
+            write(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.UnaryExpr expr) {
+            out.write(TAG_UNARY);
+            writeToken(expr.operator);
+            write(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.GroupingExpr expr) {
+            out.write(TAG_GROUPING);
+            write(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.LiteralExpr expr) {
+            out.write(TAG_LITERAL);
+            writeLiteral(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitVarExpr(Expr.VarExpr expr) {
+            out.write(TAG_VAR);
+            writeToken(expr.identifier);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.AssignExpr expr) {
+            out.write(TAG_ASSIGN);
+            writeToken(expr.assignee);
+            write(expr.assigner);
+            return null;
+        }
+
+        @Override
+        public Void visitLogicExpr(Expr.LogicExpr expr) {
+            out.write(TAG_LOGIC);
+            write(expr.left);
+            writeToken(expr.operator);
+            write(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Expr.CallExpr expr) {
+            out.write(TAG_CALL);
+            write(expr.callee);
+            writeToken(expr.paren);
+            writeVarint(expr.arguments.size());
+            for (Expr argument : expr.arguments) {
+                write(argument);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.ExpressionStmt stmt) {
+            out.write(TAG_EXPRESSION_STMT);
+            write(stmt.expr);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.PrintStmt stmt) {
+            out.write(TAG_PRINT);
+            write(stmt.expr);
+            return null;
+        }
+
+        @Override
+        public Void visitDeclarationStmt(Stmt.DeclarationStmt stmt) {
+            out.write(TAG_DECLARATION);
+            writeToken(stmt.name);
+            write(stmt.initializer);
+            return null;
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.BlockStmt stmt) {
+            out.write(TAG_BLOCK);
+            writeToken(stmt.brace);
+            out.write(stmt.scoped ? 1 : 0);
+            writeStatements(stmt.declarations);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmt(Stmt.IfStmt stmt) {
+            out.write(TAG_IF);
+            write(stmt.condition);
+            write(stmt.thenBranch);
+            write(stmt.elseBranch);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.WhileStmt stmt) {
+            out.write(TAG_WHILE);
+            writeToken(stmt.keyword);
+            write(stmt.condition);
+            write(stmt.loopBody);
+            return null;
+        }
+
+        @Override
+        public Void visitForStmt(Stmt.ForStmt stmt) {
+            out.write(TAG_FOR);
+            writeToken(stmt.keyword);
+            write(stmt.initializer);
+            write(stmt.condition);
+            write(stmt.increment);
+            write(stmt.loopBody);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.FunctionStmt stmt) {
+            out.write(TAG_FUNCTION);
+            writeToken(stmt.name);
+            writeVarint(stmt.params.size());
+            for (Token param : stmt.params) {
+                writeToken(param);
+            }
+            writeStatements(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.ReturnStmt stmt) {
+            out.write(TAG_RETURN);
+            writeToken(stmt.keyword);
+            write(stmt.value);
+            return null;
+        }
+    }
+
+    private static final class Reader {
+
+        private final ByteBuffer in;
+
+        private final List<String> strings = new ArrayList<>();
+
+        Reader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        List<Stmt> readStatements() {
+            int count = readVarint();
+            // don't trust the count for the capacity, the file may be broken
+            List<Stmt> statements = new ArrayList<>(Math.min(count, in.remaining()));
+            for (int i = 0; i < count; i++) {
+                statements.add(readStmt());
+            }
+            return statements;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.get();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("varint too long");
+        }
+
+        private String readString() {
+            int index = readVarint();
+            if (index > 0) return strings.get(index - 1);
+
+            int length = readVarint();
+            if (length > in.remaining()) throw new BufferUnderflowException();
+            String string = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            strings.add(string);
+            return string;
+        }
+
+        private Token readToken() {
+            int type = in.get() & 0xff;
+            if (type >= TOKEN_TYPES.length) throw new IllegalArgumentException("unknown token type");
+            String lexeme = readString();
+            int line = readVarint();
+            return new Token(TOKEN_TYPES[type], lexeme, null, line);
+        }
+
+        private Object readLiteral() {
+            switch (in.get()) {
+                case LITERAL_NIL -> {
+                    return null;
+                }
+                case LITERAL_TRUE -> {
+                    return true;
+                }
+                case LITERAL_FALSE -> {
+                    return false;
+                }
+                case LITERAL_NUMBER -> {
+                    return Double.longBitsToDouble(in.getLong());
+                }
+                case LITERAL_STRING -> {
+                    return readString();
+                }
+            }
+            throw new IllegalArgumentException("unknown literal");
+        }
+
+        private Expr readExpr() {
+            switch (in.get()) {
+                case TAG_NULL -> {
+                    return null;
+                }
+                case TAG_BINARY -> {
+                    Expr left = readExpr();
+                    Token operator = readToken();
+                    return new Expr.BinaryExpr(left, operator, readExpr());
+                }
+                case TAG_UNARY -> {
+                    Token operator = readToken();
+                    return new Expr.UnaryExpr(operator, readExpr());
+                }
+                case TAG_GROUPING -> {
+                    return new Expr.GroupingExpr(readExpr());
+                }
+                case TAG_LITERAL -> {
+                    return new Expr.LiteralExpr(readLiteral());
+                }
+                case TAG_VAR -> {
+                    return new Expr.VarExpr(readToken());
+                }
+                case TAG_ASSIGN -> {
+                    Token assignee = readToken();
+                    return new Expr.AssignExpr(assignee, readExpr());
+                }
+                case TAG_LOGIC -> {
+                    Expr left = readExpr();
+                    Token operator = readToken();
+                    return new Expr.LogicExpr(left, operator, readExpr());
+                }
+                case TAG_CALL -> {
+                    Expr callee = readExpr();
+                    Token paren = readToken();
+                    int count = readVarint();
+                    List<Expr> arguments = new ArrayList<>(Math.min(count, in.remaining()));
+                    for (int i = 0; i < count; i++) {
+                        arguments.add(readExpr());
+                    }
+                    return new Expr.CallExpr(callee, paren, arguments);
+                }
+            }
+            throw new IllegalArgumentException("unknown expression");
+        }
+
+        private Stmt readStmt() {
+            switch (in.get()) {
+                case TAG_NULL -> {
+                    return null;
+                }
+                case TAG_EXPRESSION_STMT -> {
+                    return new Stmt.ExpressionStmt(readExpr());
+                }
+                case TAG_PRINT -> {
+                    return new Stmt.PrintStmt(readExpr());
+                }
+                case TAG_DECLARATION -> {
+                    Token name = readToken();
+                    return new Stmt.DeclarationStmt(name, readExpr());
+                }
+                case TAG_BLOCK -> {
+                    Token brace = readToken();
+                    boolean scoped = in.get() != 0;
+                    return new Stmt.BlockStmt(brace, readStatements(), scoped);
+                }
+                case TAG_IF -> {
+                    Expr condition = readExpr();
+                    Stmt thenBranch = readStmt();
+                    return new Stmt.IfStmt(condition, thenBranch, readStmt());
+                }
+                case TAG_WHILE -> {
+                    Token keyword = readToken();
+                    Expr condition = readExpr();
+                    return new Stmt.WhileStmt(keyword, condition, readStmt());
+                }
+                case TAG_FOR -> {
+                    Token keyword = readToken();
+                    Stmt initializer = readStmt();
+                    Expr condition = readExpr();
+                    Expr increment = readExpr();
+                    return new Stmt.ForStmt(keyword, initializer, condition, increment, readStmt());
+                }
+                case TAG_FUNCTION -> {
+                    Token name = readToken();
+                    int count = readVarint();
+                    List<Token> params = new ArrayList<>(Math.min(count, in.remaining()));
+                    for (int i = 0; i < count; i++) {
+                        params.add(readToken());
+                    }
+                    return new Stmt.FunctionStmt(name, params, readStatements());
+                }
+                case TAG_RETURN -> {
+                    Token keyword = readToken();
+                    return new Stmt.ReturnStmt(keyword, readExpr());
+                }
+            }
+            throw new IllegalArgumentException("unknown statement");
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.coiggahou.lox;
+
+import static com.coiggahou.lox.Unboxed.NUMBER;
+
+/**
+ * what a BinaryExpr or an AssignExpr turns into after it is run the first time
+ *
+ * the generic visitBinaryExpr() switches on the operator and checks the types
+ * of the operands every time, though nearly every `+` in a script only ever adds numbers
+ * so the first time a node is run, the Interpreter picks a Specialization for it
+ * by the types it has just seen (and by the shape of the node),
+ * and from then on the node is run by its Specialization:
+ *
+ *      a + b           ADD: adds two numbers, with no switch on the operator
+ *      i < 100         LessThanConstant: reads the slot of `i` itself
+ *                      and compares it with the literal, evaluating no child
+ *      i = i + 1       AddConstantToLocal: adds to the slot of `i` in place
+ *
+ * a Specialization which meets a value it can't handle
+ * (e.g. the `+` turns out to also concatenate strings)
+ * deoptimizes: it puts GENERIC in the node, for good, and finishes the run
+ * on the generic path, with what was evaluated so far, so nothing is evaluated twice
+ *
+ * NOTE:
+ *  a tree may be run by several Interpreters at the same time (e.g. a Program from the ProgramCache),
+ *  so the `specialization` of a node is written without any locking:
+ *  every Specialization is immutable and works for any values (deoptimizing if it must),
+ *  so a thread seeing an older one than another thread just runs a bit slower
+ */
+abstract class Specialization<E extends Expr> {
+
+    /**
+     * @return the value, or Unboxed.NUMBER with the result left in the `number` of the Interpreter
+     */
+    abstract Object execute(Interpreter interpreter, E expr);
+
+    /**
+     * the node stays generic
+     */
+    static final Specialization<Expr.BinaryExpr> GENERIC = new Specialization<>() {
+        @Override
+        Object execute(Interpreter interpreter, Expr.BinaryExpr expr) {
+            return interpreter.evaluateBinary(expr);
+        }
+    };
+
+    static final Specialization<Expr.AssignExpr> GENERIC_ASSIGN = new Specialization<>() {
+        @Override
+        Object execute(Interpreter interpreter, Expr.AssignExpr expr) {
+            return interpreter.assign(expr);
+        }
+    };
+
+    /**
+     * pick the Specialization of a BinaryExpr which has just given its operands
+     */
+    static Specialization<Expr.BinaryExpr> of(Expr.BinaryExpr expr, Object left, Object right) {
+        if (!Interpreter.isNumber(left) || !Interpreter.isNumber(right)) return GENERIC;
+
+        if (expr.left instanceof Expr.VarExpr && expr.right instanceof Expr.LiteralExpr) {
+            Expr.VarExpr variable = (Expr.VarExpr) expr.left;
+            Object literal = ((Expr.LiteralExpr) expr.right).value;
+            if (variable.depth >= 0 && literal instanceof Double) {
+                int depth = variable.depth;
+                int slot = variable.slot;
+                double constant = (double) literal;
+                Specialization<Expr.BinaryExpr> fused = switch (expr.operator.type) {
+                    case LESS -> new LessThanConstant(depth, slot, constant);
+                    case LESS_EQUAL -> new LessEqualConstant(depth, slot, constant);
+                    case GREATER -> new GreaterThanConstant(depth, slot, constant);
+                    case GREATER_EQUAL -> new GreaterEqualConstant(depth, slot, constant);
+                    default -> null;
+                };
+                if (fused != null) return fused;
+            }
+        }
+
+        return switch (expr.operator.type) {
+            case PLUS -> ADD;
+            case MINUS -> SUBTRACT;
+            case STAR -> MULTIPLY;
+            case SLASH -> DIVIDE;
+            case LESS -> LESS;
+            case LESS_EQUAL -> LESS_EQUAL;
+            case GREATER -> GREATER;
+            case GREATER_EQUAL -> GREATER_EQUAL;
+            default -> GENERIC;
+        };
+    }
+
+    /**
+     * pick the Specialization of an AssignExpr which has just assigned the value,
+     * only `i = i + literal` (and `i = i - literal`) on a local has one
+     */
+    static Specialization<Expr.AssignExpr> of(Expr.AssignExpr expr, Object value) {
+        if (expr.depth < 0 || !Interpreter.isNumber(value)) return GENERIC_ASSIGN;
+        if (!(expr.assigner instanceof Expr.BinaryExpr)) return GENERIC_ASSIGN;
+
+        Expr.BinaryExpr binary = (Expr.BinaryExpr) expr.assigner;
+        TokenType operator = binary.operator.type;
+        if (operator != TokenType.PLUS && operator != TokenType.MINUS) return GENERIC_ASSIGN;
+        if (!(binary.left instanceof Expr.VarExpr) || !(binary.right instanceof Expr.LiteralExpr)) return GENERIC_ASSIGN;
+
+        Expr.VarExpr variable = (Expr.VarExpr) binary.left;
+        Object literal = ((Expr.LiteralExpr) binary.right).value;
+        if (variable.depth != expr.depth || variable.slot != expr.slot || !(literal instanceof Double)) {
+            return GENERIC_ASSIGN;
+        }
+        // `i - c` is exactly `i + -c`
+        double constant = (double) literal;
+        return new AddConstantToLocal(expr.depth, expr.slot, operator == TokenType.PLUS ? constant : -constant);
+    }
+
+
+    /**
+     * both operands are evaluated, as by the generic path,
+     * and only then checked to be numbers
+     */
+    private abstract static class Numbers extends Specialization<Expr.BinaryExpr> {
+
+        @Override
+        final Object execute(Interpreter interpreter, Expr.BinaryExpr expr) {
+            Object l = interpreter.evaluate(expr.left);
+            double ln = interpreter.numberOf(l);
+            Object r = interpreter.evaluate(expr.right);
+            double rn = interpreter.numberOf(r);
+            if (Interpreter.isNumber(l) && Interpreter.isNumber(r)) {
+                return apply(interpreter, ln, rn);
+            }
+            expr.specialization = GENERIC;
+            return interpreter.binary(expr, l, ln, r, rn);
+        }
+
+        abstract Object apply(Interpreter interpreter, double l, double r);
+    }
+
+    private static final Numbers ADD = new Numbers() {
+        @Override
+        Object apply(Interpreter interpreter, double l, double r) {
+            return interpreter.number(l + r);
+        }
+    };
+
+    private static final Numbers SUBTRACT = new Numbers() {
+        @Override
+        Object apply(Interpreter interpreter, double l, double r) {
+            return interpreter.number(l - r);
+        }
+    };
+
+    private static final Numbers MULTIPLY = new Numbers() {
+        @Override
+        Object apply(Interpreter interpreter, double l, double r) {
+            return interpreter.number(l * r);
+        }
+    };
+
+    private static final Numbers DIVIDE = new Numbers() {
+        @Override
+        Object apply(Interpreter interpreter, double l, double r) {
+            return interpreter.number(l / r);
+        }
+    };
+
+    private static final Numbers LESS = new Numbers() {
+        @Override
+        Object apply(Interpreter interpreter, double l, double r) {
+            return l < r;
+        }
+    };
+
+    private static final Numbers LESS_EQUAL = new Numbers() {
+        @Override
+        Object apply(Interpreter interpreter, double l, double r) {
+            return l <= r;
+        }
+    };
+
+    private static final Numbers GREATER = new Numbers() {
+        @Override
+        Object apply(Interpreter interpreter, double l, double r) {
+            return l > r;
+        }
+    };
+
+    private static final Numbers GREATER_EQUAL = new Numbers() {
+        @Override
+        Object apply(Interpreter interpreter, double l, double r) {
+            return l >= r;
+        }
+    };
+
+
+    /**
+     * `local < literal` and the like: the local is read right from its slot
+     * (reading a variable has no side effect, so deoptimizing can evaluate it again)
+     */
+    private abstract static class CompareLocalWithConstant extends Specialization<Expr.BinaryExpr> {
+        final int depth;
+        final int slot;
+        final double constant;
+
+        CompareLocalWithConstant(int depth, int slot, double constant) {
+            this.depth = depth;
+            this.slot = slot;
+            this.constant = constant;
+        }
+
+        @Override
+        final Object execute(Interpreter interpreter, Expr.BinaryExpr expr) {
+            Environment scope = interpreter.scope(depth);
+            Object value = scope.get(slot);
+            if (value == NUMBER) return compare(scope.getNumber(slot));
+            if (value instanceof Double) return compare((double) value);
+            expr.specialization = GENERIC;
+            return interpreter.evaluateBinary(expr);
+        }
+
+        abstract boolean compare(double value);
+    }
+
+    private static final class LessThanConstant extends CompareLocalWithConstant {
+        LessThanConstant(int depth, int slot, double constant) {
+            super(depth, slot, constant);
+        }
+
+        @Override
+        boolean compare(double value) {
+            return value < constant;
+        }
+    }
+
+    private static final class LessEqualConstant extends CompareLocalWithConstant {
+        LessEqualConstant(int depth, int slot, double constant) {
+            super(depth, slot, constant);
+        }
+
+        @Override
+        boolean compare(double value) {
+            return value <= constant;
+        }
+    }
+
+    private static final class GreaterThanConstant extends CompareLocalWithConstant {
+        GreaterThanConstant(int depth, int slot, double constant) {
+            super(depth, slot, constant);
+        }
+
+        @Override
+        boolean compare(double value) {
+            return value > constant;
+        }
+    }
+
+    private static final class GreaterEqualConstant extends CompareLocalWithConstant {
+        GreaterEqualConstant(int depth, int slot, double constant) {
+            super(depth, slot, constant);
+        }
+
+        @Override
+        boolean compare(double value) {
+            return value >= constant;
+        }
+    }
+
+
+    /**
+     * `i = i + literal` on a local, added in place in its slot
+     */
+    private static final class AddConstantToLocal extends Specialization<Expr.AssignExpr> {
+        final int depth;
+        final int slot;
+        final double constant;
+
+        AddConstantToLocal(int depth, int slot, double constant) {
+            this.depth = depth;
+            this.slot = slot;
+            this.constant = constant;
+        }
+
+        @Override
+        Object execute(Interpreter interpreter, Expr.AssignExpr expr) {
+            Environment scope = interpreter.scope(depth);
+            Object value = scope.get(slot);
+            double result;
+            if (value == NUMBER) {
+                result = scope.getNumber(slot) + constant;
+            }
+            else if (value instanceof Double) {
+                result = (double) value + constant;
+            }
+            else {
+                expr.specialization = GENERIC_ASSIGN;
+                return interpreter.assign(expr);
+            }
+            scope.setNumber(slot, result);
+            return interpreter.number(result);
+        }
+    }
+}
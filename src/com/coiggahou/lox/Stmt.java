@@ -13,6 +13,9 @@ abstract class Stmt {
         R visitBlockStmt(BlockStmt stmt);
         R visitIfStmt(IfStmt stmt);
         R visitWhileStmt(WhileStmt stmt);
+        R visitForStmt(ForStmt stmt);
+        R visitFunctionStmt(FunctionStmt stmt);
+        R visitReturnStmt(ReturnStmt stmt);
     }
 
 
@@ -54,6 +57,12 @@ abstract class Stmt {
         final Token name;
         final Expr initializer;
 
+        /**
+         * slot in the enclosing block scope given by the Resolver
+         * -1 means a global (or not resolved at all)
+         */
+        int slot = -1;
+
         DeclarationStmt(Token name) {
             this.name = name;
             this.initializer = null;
@@ -88,10 +97,33 @@ abstract class Stmt {
     }
 
     static class BlockStmt extends Stmt {
+        /**
+         * the `{`, for the line of the block
+         */
+        final Token brace;
         final List<Stmt> declarations;
 
-        BlockStmt(List<Stmt> declarations) {
+        /**
+         * whether the block opens a new scope,
+         * the DeadCodeEliminator marks blocks declaring no variable as not scoped,
+         * so they are run in the enclosing scope without creating an Environment
+         */
+        final boolean scoped;
+
+        /**
+         * number of variables declared directly in this block,
+         * given by the Resolver, -1 if not resolved
+         */
+        int slotCount = -1;
+
+        BlockStmt(Token brace, List<Stmt> declarations) {
+            this(brace, declarations, true);
+        }
+
+        BlockStmt(Token brace, List<Stmt> declarations, boolean scoped) {
+            this.brace = brace;
             this.declarations = declarations;
+            this.scoped = scoped;
         }
 
         @Override
@@ -101,10 +133,16 @@ abstract class Stmt {
     }
 
     static class WhileStmt extends Stmt {
+        /**
+         * the `while`, for the line of the loop
+         * (the condition may have none, e.g. `while (true)`)
+         */
+        final Token keyword;
         final Expr condition;
         final Stmt loopBody;
 
-        WhileStmt(Expr condition, Stmt loopBody) {
+        WhileStmt(Token keyword, Expr condition, Stmt loopBody) {
+            this.keyword = keyword;
             this.condition = condition;
             this.loopBody = loopBody;
         }
@@ -115,4 +153,109 @@ abstract class Stmt {
         }
     }
 
+    /**
+     * `for (initializer; condition; increment) loopBody`
+     *
+     * it is NOT desugared into a block holding a while loop,
+     * so the Interpreter can run it with one scope for the whole loop,
+     * and the increment without wrapping it into a statement
+     *
+     * any of initializer, condition and increment may be null,
+     * no condition means an endless loop
+     */
+    static class ForStmt extends Stmt {
+        /**
+         * the `for`, same as in WhileStmt
+         */
+        final Token keyword;
+        final Stmt initializer;
+        final Expr condition;
+        final Expr increment;
+        final Stmt loopBody;
+
+        /**
+         * whether the loop opens a scope of its own,
+         * which is when the initializer declares the loop variable
+         */
+        final boolean scoped;
+
+        /**
+         * number of variables in the scope of the loop,
+         * given by the Resolver, -1 if not resolved
+         */
+        int slotCount = -1;
+
+        ForStmt(Token keyword, Stmt initializer, Expr condition, Expr increment, Stmt loopBody) {
+            this.keyword = keyword;
+            this.initializer = initializer;
+            this.condition = condition;
+            this.increment = increment;
+            this.loopBody = loopBody;
+            this.scoped = initializer instanceof DeclarationStmt;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitForStmt(this);
+        }
+    }
+
+    /**
+     * `fun name(params...) { body }`
+     */
+    static class FunctionStmt extends Stmt {
+        final Token name;
+        final List<Token> params;
+        final List<Stmt> body;
+
+        /**
+         * slot of the name in the enclosing block scope given by the Resolver
+         * -1 means a global (or not resolved at all)
+         */
+        int slot = -1;
+
+        /**
+         * number of variables in the scope of a call (the parameters first,
+         * then the variables declared directly in the body),
+         * given by the Resolver, -1 if not resolved
+         */
+        int slotCount = -1;
+
+        /**
+         * whether a function is declared anywhere inside the body,
+         * whose closure may keep the scope of a call alive after it returns,
+         * set by the Resolver
+         */
+        boolean hasClosures = false;
+
+        FunctionStmt(Token name, List<Token> params, List<Stmt> body) {
+            this.name = name;
+            this.params = params;
+            this.body = body;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitFunctionStmt(this);
+        }
+    }
+
+    /**
+     * `return value;`, the value may be null
+     */
+    static class ReturnStmt extends Stmt {
+        final Token keyword;
+        final Expr value;
+
+        ReturnStmt(Token keyword, Expr value) {
+            this.keyword = keyword;
+            this.value = value;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitReturnStmt(this);
+        }
+    }
+
 }
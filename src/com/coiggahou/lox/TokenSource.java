@@ -0,0 +1,13 @@
+package com.coiggahou.lox;
+
+/**
+ * anything the Parser can pull tokens from, one at a time
+ */
+interface TokenSource {
+
+    /**
+     * @return the next token, or an EOF token
+     *         once there is nothing left (and ever after)
+     */
+    Token nextToken();
+}
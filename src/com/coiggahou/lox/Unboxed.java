@@ -0,0 +1,25 @@
+package com.coiggahou.lox;
+
+/**
+ * marker that lets the Interpreter pass numbers around without boxing them
+ *
+ * wherever a value is expected (the result of evaluating an expression,
+ * a slot of an array-backed Environment), Unboxed.NUMBER means
+ * "this is a number, and its double is kept aside in a primitive field"
+ *
+ * NOTE:
+ *  booleans don't need such a marker,
+ *  autoboxing a boolean always gives the cached Boolean.TRUE / Boolean.FALSE
+ */
+final class Unboxed {
+
+    static final Object NUMBER = new Unboxed();
+
+    private Unboxed() {
+    }
+
+    @Override
+    public String toString() {
+        return "<unboxed number>";
+    }
+}
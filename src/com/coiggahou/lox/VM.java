@@ -0,0 +1,234 @@
+package com.coiggahou.lox;
+
+import com.coiggahou.lox.error.RuntimeError;
+import com.coiggahou.lox.output.OutputSink;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.coiggahou.lox.Interpreter.isEqual;
+import static com.coiggahou.lox.Interpreter.isString;
+import static com.coiggahou.lox.Interpreter.isTruthy;
+import static com.coiggahou.lox.Interpreter.stringify;
+
+/**
+ * a stack-based virtual machine executing the Chunk given by the Compiler
+ *
+ * it behaves the same as the tree-walking Interpreter,
+ * including the messages and lines of runtime errors
+ */
+class VM {
+
+    /**
+     * global variables survive between chunks (e.g. lines of the REPL)
+     */
+    private final Map<String, Object> globals = new HashMap<>();
+
+    /**
+     * where OP_PRINT writes to
+     */
+    private final OutputSink output;
+
+    /**
+     * charged at every OP_LOOP, see Interpreter.budget
+     */
+    private Budget budget = Budget.unlimited();
+
+    VM(OutputSink output) {
+        this.output = output;
+    }
+
+    void limitTo(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @throws RuntimeError for the caller to report
+     */
+    void interpret(Chunk chunk) {
+        run(chunk);
+    }
+
+    private void run(Chunk chunk) {
+        final byte[] code = chunk.code();
+        final Object[] constants = chunk.constants();
+        final Object[] stack = new Object[chunk.maxStack];
+        int sp = 0;
+        int ip = 0;
+
+        // keep everything in local variables in the dispatch loop,
+        // so the JIT can keep them in registers
+        for (;;) {
+            byte op = code[ip++];
+            switch (op) {
+                case OpCode.CONSTANT -> {
+                    stack[sp++] = constants[readShort(code, ip)];
+                    ip += 2;
+                }
+                case OpCode.NIL -> stack[sp++] = null;
+                case OpCode.TRUE -> stack[sp++] = true;
+                case OpCode.FALSE -> stack[sp++] = false;
+                case OpCode.POP -> stack[--sp] = null;
+
+                case OpCode.GET_LOCAL -> {
+                    stack[sp++] = stack[readShort(code, ip)];
+                    ip += 2;
+                }
+                case OpCode.SET_LOCAL -> {
+                    stack[readShort(code, ip)] = stack[sp - 1];
+                    ip += 2;
+                }
+                case OpCode.DEFINE_GLOBAL -> {
+                    String name = (String) constants[readShort(code, ip)];
+                    ip += 2;
+                    globals.put(name, stack[--sp]);
+                    stack[sp] = null;
+                }
+                case OpCode.GET_GLOBAL -> {
+                    String name = (String) constants[readShort(code, ip)];
+                    ip += 2;
+                    Object value = globals.get(name);
+                    if (value == null && !globals.containsKey(name)) {
+                        throw error(chunk, ip, String.format("Undefined variable %s.", name));
+                    }
+                    stack[sp++] = value;
+                }
+                case OpCode.SET_GLOBAL -> {
+                    String name = (String) constants[readShort(code, ip)];
+                    ip += 2;
+                    if (!globals.containsKey(name)) {
+                        throw error(chunk, ip, String.format("Cannot assigned an undefined variable %s.", name));
+                    }
+                    globals.put(name, stack[sp - 1]);
+                }
+
+                case OpCode.EQUAL -> {
+                    Object b = stack[--sp];
+                    stack[sp - 1] = isEqual(stack[sp - 1], b);
+                }
+                case OpCode.NOT_EQUAL -> {
+                    Object b = stack[--sp];
+                    stack[sp - 1] = !isEqual(stack[sp - 1], b);
+                }
+                case OpCode.GREATER -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    checkNumberOperands(chunk, ip, a, b);
+                    stack[sp - 1] = (double) a > (double) b;
+                }
+                case OpCode.GREATER_EQUAL -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    checkNumberOperands(chunk, ip, a, b);
+                    stack[sp - 1] = (double) a >= (double) b;
+                }
+                case OpCode.LESS -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    checkNumberOperands(chunk, ip, a, b);
+                    stack[sp - 1] = (double) a < (double) b;
+                }
+                case OpCode.LESS_EQUAL -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    checkNumberOperands(chunk, ip, a, b);
+                    stack[sp - 1] = (double) a <= (double) b;
+                }
+                case OpCode.ADD -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    stack[sp - 1] = add(chunk, ip, a, b);
+                }
+                case OpCode.SUBTRACT -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    checkNumberOperands(chunk, ip, a, b);
+                    stack[sp - 1] = (double) a - (double) b;
+                }
+                case OpCode.MULTIPLY -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    checkNumberOperands(chunk, ip, a, b);
+                    stack[sp - 1] = (double) a * (double) b;
+                }
+                case OpCode.DIVIDE -> {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    checkNumberOperands(chunk, ip, a, b);
+                    stack[sp - 1] = (double) a / (double) b;
+                }
+
+                case OpCode.NOT -> stack[sp - 1] = !isTruthy(stack[sp - 1]);
+                case OpCode.NEGATE -> {
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double)) {
+                        throw error(chunk, ip, "Operand must be a number.");
+                    }
+                    stack[sp - 1] = -(double) a;
+                }
+
+                case OpCode.PRINT -> {
+                    Object value = stack[--sp];
+                    if (value instanceof Double) {
+                        output.println((double) value);
+                    }
+                    else {
+                        output.println(stringify(value));
+                    }
+                    stack[sp] = null;
+                }
+                case OpCode.JUMP -> ip += readShort(code, ip) + 2;
+                case OpCode.JUMP_IF_FALSE -> {
+                    if (isTruthy(stack[sp - 1])) {
+                        ip += 2;
+                    }
+                    else {
+                        ip += readShort(code, ip) + 2;
+                    }
+                }
+                case OpCode.LOOP -> {
+                    budget.step(chunk.line(ip - 1));
+                    ip -= readShort(code, ip) - 2;
+                }
+                case OpCode.RETURN -> {
+                    return;
+                }
+                default -> throw error(chunk, ip, "Unknown opcode " + op + ".");
+            }
+        }
+    }
+
+    private static int readShort(byte[] code, int ip) {
+        return ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+    }
+
+    /**
+     * the same rules as `+` in Interpreter.visitBinaryExpr()
+     */
+    private Object add(Chunk chunk, int ip, Object a, Object b) {
+        if (a instanceof Double && b instanceof Double) {
+            return (double) a + (double) b;
+        }
+        if (isString(a) && b instanceof Double) {
+            return budget.checkLength(LoxString.concat((CharSequence) a, (double) b), chunk.line(ip - 1));
+        }
+        if (isString(a) || isString(b)) {
+            LoxString string = LoxString.concat(isString(a) ? (CharSequence) a : stringify(a),
+                                                isString(b) ? (CharSequence) b : stringify(b));
+            return budget.checkLength(string, chunk.line(ip - 1));
+        }
+        throw error(chunk, ip, "Oprands must be two numbers or two strings.");
+    }
+
+    private static void checkNumberOperands(Chunk chunk, int ip, Object a, Object b) {
+        if (a instanceof Double && b instanceof Double) return;
+        throw error(chunk, ip, "Both operands must be numbers.");
+    }
+
+    /**
+     * the line of an error is the line of the instruction just executed
+     */
+    private static RuntimeError error(Chunk chunk, int ip, String message) {
+        return new RuntimeError(chunk.line(ip - 1), message);
+    }
+}
@@ -0,0 +1,26 @@
+package com.coiggahou.lox.error;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * an ErrorReporter keeping the errors instead of printing them,
+ * one is used for each script compiled, so errors of different scripts don't mix
+ */
+public class ErrorCollector implements ErrorReporter {
+
+    private final List<ScriptError> errors = new ArrayList<>();
+
+    @Override
+    public void report(int lineNumber, String where, String message) {
+        errors.add(new ScriptError(lineNumber, where, message, false));
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<ScriptError> errors() {
+        return List.copyOf(errors);
+    }
+}
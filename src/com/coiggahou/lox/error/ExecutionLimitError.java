@@ -0,0 +1,31 @@
+package com.coiggahou.lox.error;
+
+/**
+ * a run stopped because it went over one of its ExecutionLimits,
+ * or because it was cancelled
+ *
+ * unlike other RuntimeErrors, it is not the script doing something wrong,
+ * so a host may want to tell it apart (e.g. to retry with a larger budget)
+ */
+public class ExecutionLimitError extends RuntimeError {
+
+    public enum Limit {
+        STEPS,
+        TIMEOUT,
+        CANCELLED,
+        ENVIRONMENTS,
+        SCOPES,
+        STRING_LENGTH
+    }
+
+    private final Limit limit;
+
+    public ExecutionLimitError(int line, Limit limit, String message) {
+        super(line, message);
+        this.limit = limit;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+}
@@ -6,17 +6,35 @@ public class RuntimeError extends RuntimeException{
 
     private final Token token;
 
+    /**
+     * for errors that are not raised at a token (e.g. by the VM),
+     * -1 if the error has a token
+     */
+    private final int line;
+
     public Token getToken() {
         return token;
     }
 
+    public int getLine() {
+        return line;
+    }
+
     public RuntimeError(String message) {
         super(message);
         this.token = null;
+        this.line = -1;
     }
 
     public RuntimeError(Token token, String message) {
         super(message);
         this.token = token;
+        this.line = -1;
+    }
+
+    public RuntimeError(int line, String message) {
+        super(message);
+        this.token = null;
+        this.line = line;
     }
 }
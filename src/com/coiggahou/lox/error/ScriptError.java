@@ -0,0 +1,50 @@
+package com.coiggahou.lox.error;
+
+/**
+ * an error found in a script, either when compiling or running it
+ *
+ * it carries the same pieces an ErrorReporter is given,
+ * so it can be reported later (e.g. by the thread that submitted the script)
+ */
+public final class ScriptError {
+
+    private final int line;
+    private final String where;
+    private final String message;
+    private final boolean runtime;
+
+    public ScriptError(int line, String where, String message, boolean runtime) {
+        this.line = line;
+        this.where = where;
+        this.message = message;
+        this.runtime = runtime;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getWhere() {
+        return where;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * false for scan, parse and compile errors
+     */
+    public boolean isRuntime() {
+        return runtime;
+    }
+
+    public void reportTo(ErrorReporter reporter) {
+        reporter.report(line, where, message);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[line %d] Error %s: %s", line, where, message);
+    }
+}
@@ -0,0 +1,43 @@
+package com.coiggahou.lox.output;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * appends the output to a given Appendable,
+ * e.g. a StringBuilder, a Writer, or a PrintStream
+ *
+ * it holds nothing itself, flush() is passed on if the target is Flushable
+ */
+public class AppendableOutputSink implements OutputSink {
+
+    private final Appendable target;
+
+    private final String lineSeparator = System.lineSeparator();
+
+    public AppendableOutputSink(Appendable target) {
+        this.target = target;
+    }
+
+    @Override
+    public void println(CharSequence line) {
+        try {
+            target.append(line).append(lineSeparator);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (!(target instanceof Flushable)) return;
+        try {
+            ((Flushable) target).flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
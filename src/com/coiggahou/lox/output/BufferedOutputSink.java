@@ -0,0 +1,91 @@
+package com.coiggahou.lox.output;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * collects the output in a large buffer
+ * and writes it to a channel in one go when the buffer is full
+ *
+ * System.out.println() takes a lock and may flush for every line,
+ * which is what slows down scripts printing lots of lines
+ *
+ * NOTE:
+ *  nothing reaches the channel until the buffer fills up or flush() is called,
+ *  so the owner must flush() before exiting, before reporting an error,
+ *  and before waiting for the user (e.g. at the REPL prompt)
+ */
+public class BufferedOutputSink implements OutputSink {
+
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final WritableByteChannel channel;
+
+    private final Charset charset;
+
+    private final int capacity;
+
+    private final StringBuilder buffer;
+
+    private final String lineSeparator = System.lineSeparator();
+
+    public BufferedOutputSink(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, DEFAULT_CAPACITY);
+    }
+
+    public BufferedOutputSink(WritableByteChannel channel, Charset charset, int capacity) {
+        this.channel = channel;
+        this.charset = charset;
+        this.capacity = capacity;
+        this.buffer = new StringBuilder(capacity);
+    }
+
+    /**
+     * a sink writing to the standard output directly,
+     * bypassing the lock and the buffer of System.out
+     */
+    public static BufferedOutputSink stdout() {
+        FileOutputStream out = new FileOutputStream(FileDescriptor.out);
+        return new BufferedOutputSink(out.getChannel(), Charset.defaultCharset());
+    }
+
+    @Override
+    public void println(CharSequence line) {
+        buffer.append(line).append(lineSeparator);
+        if (buffer.length() >= capacity) {
+            flush();
+        }
+    }
+
+    /**
+     * the number is formatted straight into the buffer
+     */
+    @Override
+    public void println(double number) {
+        DoubleFormatter.append(buffer, number).append(lineSeparator);
+        if (buffer.length() >= capacity) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (buffer.length() == 0) return;
+        ByteBuffer bytes = charset.encode(CharBuffer.wrap(buffer));
+        buffer.setLength(0);
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.coiggahou.lox.output;
+
+/**
+ * how Lox writes a number: like Double.toString(), without a trailing ".0"
+ *
+ * nearly all the numbers printed by scripts are integers (counters, sums, ids),
+ * so those under 1e7 are written as the digits of a long,
+ * without going through Double.toString(), endsWith() and substring()
+ * (at 1e7 Double.toString() switches to "1.0E7", which is kept as it is)
+ *
+ * NOTE:
+ *  everything else still goes to Double.toString(),
+ *  which is not always the shortest string that reads back the same double
+ *  before JDK 19, and we keep printing what it prints rather than a shorter one
+ *  (a shortest round-trip algorithm would change the output of existing scripts)
+ */
+public final class DoubleFormatter {
+
+    /**
+     * Double.toString() uses the E notation from here on
+     */
+    private static final double PLAIN_LIMIT = 1e7;
+
+    private DoubleFormatter() {
+    }
+
+    public static String toString(double number) {
+        if (isPlainInteger(number)) {
+            return isNegativeZero(number) ? "-0" : Long.toString((long) number);
+        }
+        return strip(Double.toString(number));
+    }
+
+    /**
+     * append the number to `out` with no String made for an integer
+     */
+    public static StringBuilder append(StringBuilder out, double number) {
+        if (isPlainInteger(number)) {
+            return isNegativeZero(number) ? out.append("-0") : out.append((long) number);
+        }
+        return out.append(strip(Double.toString(number)));
+    }
+
+    private static boolean isPlainInteger(double number) {
+        // false for NaN and the infinities too
+        return number == (long) number && Math.abs(number) < PLAIN_LIMIT;
+    }
+
+    private static boolean isNegativeZero(double number) {
+        return Double.doubleToRawLongBits(number) == Long.MIN_VALUE;
+    }
+
+    private static String strip(String text) {
+        if (text.endsWith(".0")) {
+            return text.substring(0, text.length() - 2);
+        }
+        return text;
+    }
+}
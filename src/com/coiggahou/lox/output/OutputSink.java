@@ -0,0 +1,28 @@
+package com.coiggahou.lox.output;
+
+/**
+ * where the output of `print` goes
+ *
+ * We separate the code that produces the output
+ * from the code that writes it out (just like ErrorReporter),
+ * so an embedder can capture the output instead of it going to System.out
+ */
+public interface OutputSink {
+
+    /**
+     * write a line of output, the line separator is added by the sink
+     */
+    void println(CharSequence line);
+
+    /**
+     * write a number as a line, formatted the way Lox prints numbers
+     */
+    default void println(double number) {
+        println(DoubleFormatter.toString(number));
+    }
+
+    /**
+     * write out everything the sink is holding
+     */
+    void flush();
+}
@@ -0,0 +1,60 @@
+package com.coiggahou.lox.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * a read-only CharSequence view over a ByteBuffer
+ * in which every byte is one character (ASCII / ISO-8859-1 text)
+ *
+ * chars are decoded on the fly in charAt(),
+ * so the bytes are never copied into a char array
+ */
+public class ByteCharSequence implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    public ByteCharSequence(ByteBuffer bytes) {
+        this(bytes, 0, bytes.limit());
+    }
+
+    private ByteCharSequence(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char) (bytes.get(offset + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new ByteCharSequence(bytes, offset + start, end - start);
+    }
+
+    /**
+     * copy the viewed bytes out as a String,
+     * this is the only place where the bytes get copied
+     */
+    @Override
+    public String toString() {
+        byte[] copy = new byte[length];
+        bytes.get(offset, copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,91 @@
+package com.coiggahou.lox.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * loads a script file for the Scanner without reading it into the heap twice
+ *
+ * the file is memory-mapped, then
+ *    1. if every byte is a character by itself (pure ASCII, or ISO-8859-1),
+ *       the mapped bytes are scanned in place through a ByteCharSequence
+ *    2. otherwise the mapped bytes are decoded once into a CharBuffer
+ */
+public class SourceFiles {
+
+    private SourceFiles() {
+    }
+
+    public static CharSequence map(Path path, Charset charset) throws IOException {
+        MappedByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (charset.equals(StandardCharsets.ISO_8859_1)
+                || (isAsciiCompatible(charset) && isAscii(bytes))) {
+            return new ByteCharSequence(bytes);
+        }
+        // malformed input is replaced, just like new String(bytes, charset) does
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes);
+    }
+
+    /**
+     * the SHA-256 of a source, to tell whether two sources are the same
+     *
+     * the chars are fed to the digest directly (2 bytes each),
+     * so the source is not encoded or copied into a String first
+     */
+    public static byte[] sha256(CharSequence source) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        int n = 0;
+        for (int i = 0, length = source.length(); i < length; i++) {
+            char c = source.charAt(i);
+            buffer[n++] = (byte) (c >>> 8);
+            buffer[n++] = (byte) c;
+            if (n == buffer.length) {
+                sha256.update(buffer, 0, n);
+                n = 0;
+            }
+        }
+        sha256.update(buffer, 0, n);
+        return sha256.digest();
+    }
+
+    /**
+     * whether the charset encodes ASCII characters as the same single bytes
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.UTF_8)
+            || charset.name().startsWith("ISO-8859-")
+            || charset.name().startsWith("windows-125");
+    }
+
+    private static boolean isAscii(MappedByteBuffer bytes) {
+        for (int i = 0, n = bytes.limit(); i < n; i++) {
+            if (bytes.get(i) < 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package com.coiggahou.lox.util;
+
+/**
+ * a table that gives one shared String for every distinct text,
+ * looked up directly by a range of a CharSequence
+ *
+ * unlike String.intern() or a HashMap<String, String>,
+ * a text that is already in the table is found by comparing characters in place,
+ * so no String is created for it at all
+ *
+ * NOTE: not thread-safe, every Scanner has its own
+ */
+public class StringInterner {
+
+    /**
+     * open addressing with linear probing,
+     * the capacity is always a power of 2
+     */
+    private String[] table = new String[256];
+    private int size = 0;
+
+    /**
+     * @return the shared String equal to source[start, end)
+     */
+    public String intern(CharSequence source, int start, int end) {
+        return intern(source, start, end, hash(source, start, end));
+    }
+
+    /**
+     * intern() with the hash already computed by the caller
+     * (e.g. while it was reading the characters anyway)
+     * @param hash must be the same as source[start, end).toString().hashCode()
+     */
+    public String intern(CharSequence source, int start, int end, int hash) {
+        int mask = table.length - 1;
+        int index = hash & mask;
+        for (;;) {
+            String entry = table[index];
+            if (entry == null) break;
+            if (entry.hashCode() == hash && matches(entry, source, start, end)) {
+                return entry;
+            }
+            index = (index + 1) & mask;
+        }
+
+        String text = source.subSequence(start, end).toString();
+        table[index] = text;
+        // keep the table at most half full
+        if (++size * 2 > table.length) {
+            grow();
+        }
+        return text;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * the same as String.hashCode(), so entries can reuse their cached hash
+     */
+    public static int hash(CharSequence source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + source.charAt(i);
+        }
+        return h;
+    }
+
+    private static boolean matches(String entry, CharSequence source, int start, int end) {
+        if (entry.length() != end - start) return false;
+        for (int i = 0; i < entry.length(); i++) {
+            if (entry.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String entry : old) {
+            if (entry == null) continue;
+            int index = entry.hashCode() & mask;
+            while (table[index] != null) {
+                index = (index + 1) & mask;
+            }
+            table[index] = entry;
+        }
+    }
+}